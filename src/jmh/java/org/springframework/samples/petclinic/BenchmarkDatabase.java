@@ -0,0 +1,228 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.samples.petclinic.owner.VisitRepository;
+import org.springframework.samples.petclinic.system.DataGenerator;
+import org.springframework.samples.petclinic.system.DataGeneratorProperties;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Embedded database holding a synthetic data set of a given number of owners, shared by
+ * the repository benchmarks.
+ * <p>
+ * The database is created from the schema and sample data under <code>db/</code>, then
+ * filled by the {@link DataGenerator} with owners, their pets and visits, skewed as
+ * described there, plus a vet for every {@value #OWNERS_PER_VET} owners. Data sets are
+ * generated with a fixed seed into files under <code>target/benchmark-db</code> (see the
+ * <code>petclinic.benchmark.dir</code> system property) and reused by later runs, as
+ * generating ten million owners takes a while.
+ * <p>
+ * The repositories run in a minimal application context: JPA and the data source as
+ * configured by <code>application.properties</code>, but no caching, web layer or
+ * in-memory owner indexes, so every call reaches the database. The schema is not
+ * validated on startup, so the same context generates the data set when needed.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+	public static final int OWNERS_PER_VET = 1000;
+
+	private static final int LAST_NAMES = 1000;
+
+	// fewer visits than the generator's default keep ten million owners manageable
+	private static final int MAX_VISITS_PER_PET = 10;
+
+	// bumped whenever the generated data changes, so that older data sets are replaced
+	private static final int VERSION = 2;
+
+	@Param({ "h2", "hsqldb" })
+	public String database;
+
+	@Param({ "10000", "1000000", "10000000" })
+	public int owners;
+
+	private ConfigurableApplicationContext context;
+
+	private int firstOwnerId;
+
+	private int firstPetId;
+
+	private String[] lastNames;
+
+	private int[] petOwnerIds;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.context = new SpringApplicationBuilder(Repositories.class).web(WebApplicationType.NONE)
+				.bannerMode(Banner.Mode.OFF).logStartupInfo(false)
+				.properties("spring.datasource.url=" + url(), "spring.datasource.username=sa",
+						"spring.datasource.password=", "spring.sql.init.mode=never",
+						"spring.jpa.hibernate.ddl-auto=none", "spring.jpa.open-in-view=false",
+						"spring.jpa.properties.hibernate.generate_statistics=false",
+						"management.metrics.data.repository.autotime.enabled=false", "logging.level.root=WARN",
+						"logging.level.org.springframework=WARN")
+				.run();
+		JdbcTemplate jdbc = this.context.getBean(JdbcTemplate.class);
+		if (generatedOwners(jdbc) != this.owners) {
+			generate(jdbc);
+		}
+		this.firstOwnerId = jdbc.queryForObject("SELECT first_owner_id FROM benchmark_data", Integer.class);
+		this.firstPetId = jdbc.queryForObject("SELECT first_pet_id FROM benchmark_data", Integer.class);
+		this.lastNames = jdbc.queryForList("SELECT last_name FROM benchmark_last_names ORDER BY last_name", String.class)
+				.toArray(new String[0]);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+
+	public <T> T getBean(Class<T> type) {
+		return this.context.getBean(type);
+	}
+
+	/**
+	 * Return the id of a generated owner.
+	 * @param index the owner's index, from 0 to {@link #owners} (exclusive)
+	 */
+	public int ownerId(int index) {
+		return this.firstOwnerId + index;
+	}
+
+	/**
+	 * Return the id of a generated pet.
+	 * @param index the pet's index in {@link #petOwnerIds()}
+	 */
+	public int petId(int index) {
+		return this.firstPetId + index;
+	}
+
+	/**
+	 * Return the owner id of every generated pet, in the order of the pets' ids; loaded
+	 * on first use, as it scans all pets.
+	 */
+	public synchronized int[] petOwnerIds() {
+		if (this.petOwnerIds == null) {
+			JdbcTemplate jdbc = this.context.getBean(JdbcTemplate.class);
+			int pets = jdbc.queryForObject("SELECT COUNT(*) FROM pets WHERE id >= ?", Integer.class, this.firstPetId);
+			int[] ownerIds = new int[pets];
+			jdbc.query("SELECT id, owner_id FROM pets WHERE id >= ?",
+					(RowCallbackHandler) rs -> ownerIds[rs.getInt(1) - this.firstPetId] = rs.getInt(2),
+					this.firstPetId);
+			this.petOwnerIds = ownerIds;
+		}
+		return this.petOwnerIds;
+	}
+
+	/**
+	 * Return one of the generated last names. Every name is equally likely to be picked,
+	 * but a few are shared by many owners and most by only a few.
+	 */
+	public String lastName(SplittableRandom random) {
+		return this.lastNames[random.nextInt(this.lastNames.length)];
+	}
+
+	private String url() {
+		Path directory = Paths.get(System.getProperty("petclinic.benchmark.dir", "target/benchmark-db"));
+		String file = directory.toAbsolutePath().resolve(this.database + "-" + this.owners).toString();
+		switch (this.database) {
+		case "h2":
+			return "jdbc:h2:file:" + file;
+		case "hsqldb":
+			// cached tables are kept on disk, memory tables would all have to fit on the heap
+			return "jdbc:hsqldb:file:" + file + ";hsqldb.default_table_type=cached;shutdown=true";
+		default:
+			throw new IllegalArgumentException("Unsupported database: " + this.database);
+		}
+	}
+
+	private static int generatedOwners(JdbcTemplate jdbc) {
+		try {
+			return jdbc.queryForObject("SELECT owners FROM benchmark_data WHERE version = ?", Integer.class, VERSION);
+		}
+		catch (DataAccessException ex) {
+			return -1;
+		}
+	}
+
+	private void generate(JdbcTemplate jdbc) {
+		long started = System.nanoTime();
+		jdbc.execute("DROP TABLE benchmark_data IF EXISTS");
+		jdbc.execute("DROP TABLE benchmark_last_names IF EXISTS");
+		new ResourceDatabasePopulator(new ClassPathResource("db/" + this.database + "/schema.sql"),
+				new ClassPathResource("db/" + this.database + "/data.sql")).execute(jdbc.getDataSource());
+		int ownerId = nextId(jdbc, "owners");
+		int petId = nextId(jdbc, "pets");
+		DataGeneratorProperties properties = new DataGeneratorProperties();
+		properties.setOwners(this.owners);
+		properties.setVets(this.owners / OWNERS_PER_VET);
+		properties.setLastNames(LAST_NAMES);
+		properties.setMaxVisitsPerPet(MAX_VISITS_PER_PET);
+		properties.setUntil(LocalDate.of(2022, 7, 1));
+		DataGenerator.Result result = new DataGenerator(jdbc, getBean(PlatformTransactionManager.class), properties)
+				.generate();
+		jdbc.execute("CREATE TABLE benchmark_last_names AS (SELECT DISTINCT last_name FROM owners WHERE id >= "
+				+ ownerId + ") WITH DATA");
+		jdbc.execute("CREATE TABLE benchmark_data (version INTEGER, owners INTEGER, first_owner_id INTEGER, "
+				+ "first_pet_id INTEGER)");
+		jdbc.update("INSERT INTO benchmark_data VALUES (?, ?, ?, ?)", VERSION, this.owners, ownerId, petId);
+		System.out.printf("%s into %s in %d s%n", result, this.database,
+				(System.nanoTime() - started) / 1_000_000_000L);
+	}
+
+	private static int nextId(JdbcTemplate jdbc, String table) {
+		return jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table, Integer.class);
+	}
+
+	/**
+	 * The repositories and what they need, without the rest of the application.
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@EnableAutoConfiguration
+	@EntityScan(basePackageClasses = PetClinicApplication.class)
+	@EnableJpaRepositories(basePackageClasses = PetClinicApplication.class)
+	@Import(VisitRepository.class)
+	static class Repositories {
+
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Turns the JSON results of a JMH run into a Markdown table comparing the values of one
+ * benchmark parameter side by side, by default the database of the repository
+ * benchmarks. There is a row for each benchmark and combination of its other
+ * parameters, e.g. the number of owners, and for each compared value the throughput, the
+ * average time and the median and 99th percentile of the sampled times, as far as the
+ * benchmark was run in these modes, and the bytes allocated per operation when run with
+ * <code>-prof gc</code>.
+ * <p>
+ * Usage: <code>BenchmarkReport &lt;result.json&gt; &lt;report.md&gt; [parameter]</code>
+ */
+public final class BenchmarkReport {
+
+	// value of benchmarks without the compared parameter
+	private static final String NONE = "-";
+
+	private static final String[] METRICS = { "thrpt", "avgt", "p50", "p99", "alloc" };
+
+	private BenchmarkReport() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: BenchmarkReport <result.json> <report.md> [parameter]");
+			System.exit(1);
+		}
+		String parameter = (args.length > 2) ? args[2] : "database";
+		JsonNode results = new ObjectMapper().readTree(new File(args[0]));
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8))) {
+			write(results, parameter, out);
+		}
+		System.out.println("Wrote " + args[1]);
+	}
+
+	static void write(JsonNode results, String parameter, PrintWriter out) {
+		// row label, compared value and metric to the formatted score
+		Map<String, Map<String, Map<String, String>>> rows = new TreeMap<>();
+		Set<String> values = new LinkedHashSet<>();
+		Set<String> metrics = new LinkedHashSet<>();
+		for (JsonNode result : results) {
+			Map<String, String> params = new TreeMap<>();
+			Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				params.put(field.getKey(), field.getValue().asText());
+			}
+			String value = params.containsKey(parameter) ? params.remove(parameter) : NONE;
+			String row = label(result.path("benchmark").asText(), params);
+			Map<String, String> scores = rows.computeIfAbsent(row, key -> new TreeMap<>())
+					.computeIfAbsent(value, key -> new LinkedHashMap<>());
+			JsonNode metric = result.path("primaryMetric");
+			String unit = metric.path("scoreUnit").asText();
+			String mode = result.path("mode").asText();
+			if ("sample".equals(mode)) {
+				scores.put("p50", format(metric.path("scorePercentiles").path("50.0").asDouble(), unit));
+				scores.put("p99", format(metric.path("scorePercentiles").path("99.0").asDouble(), unit));
+			}
+			else {
+				scores.put(mode, format(metric.path("score").asDouble(), unit));
+			}
+			// only measured with -prof gc
+			JsonNode allocated = result.path("secondaryMetrics").path("\u00b7gc.alloc.rate.norm");
+			if (!allocated.isMissingNode()) {
+				scores.put("alloc", format(allocated.path("score").asDouble(), allocated.path("scoreUnit").asText()));
+			}
+			values.add(value);
+			metrics.addAll(scores.keySet());
+		}
+		List<String> columns = new ArrayList<>();
+		for (String metric : METRICS) {
+			if (metrics.contains(metric)) {
+				columns.add(metric);
+			}
+		}
+		StringBuilder header = new StringBuilder("| Benchmark |");
+		StringBuilder rule = new StringBuilder("|---|");
+		for (String value : values) {
+			for (String column : columns) {
+				header.append(' ').append(NONE.equals(value) ? "" : value + " ").append(column).append(" |");
+				rule.append("---:|");
+			}
+		}
+		out.println("# Benchmark results");
+		out.println();
+		out.println(header);
+		out.println(rule);
+		for (Map.Entry<String, Map<String, Map<String, String>>> row : rows.entrySet()) {
+			StringBuilder line = new StringBuilder("| ").append(row.getKey()).append(" |");
+			for (String value : values) {
+				Map<String, String> scores = row.getValue().get(value);
+				for (String column : columns) {
+					String score = (scores != null) ? scores.get(column) : null;
+					line.append(' ').append((score != null) ? score : "").append(" |");
+				}
+			}
+			out.println(line);
+		}
+	}
+
+	/**
+	 * Label a row with the simple class and method name of the benchmark, followed by its
+	 * other parameters.
+	 */
+	private static String label(String benchmark, Map<String, String> params) {
+		int method = benchmark.lastIndexOf('.');
+		String label = benchmark.substring(benchmark.lastIndexOf('.', method - 1) + 1);
+		StringBuilder builder = new StringBuilder(label);
+		params.forEach((name, value) -> builder.append(' ').append(name).append('=').append(value));
+		return builder.toString();
+	}
+
+	private static String format(double score, String unit) {
+		return String.format(Locale.ROOT, "%.3f %s", score, unit);
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.MessageSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.thymeleaf.ThymeleafAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.spring5.expression.ThymeleafEvaluationContext;
+
+/**
+ * Renders the application's Thymeleaf templates directly, for the template benchmarks.
+ * <p>
+ * The template engine is configured by Spring Boot from
+ * <code>application.properties</code>, as in the application, with templates cached
+ * after their first use. Only the engine and the message source are started, and
+ * templates are rendered into a reused buffer for a mock request, so neither HTTP nor
+ * the database add to the measured time.
+ */
+@State(Scope.Benchmark)
+public class TemplateRenderer {
+
+	private ConfigurableApplicationContext context;
+
+	private SpringTemplateEngine engine;
+
+	private MockServletContext servletContext;
+
+	@Setup
+	public void setup() {
+		this.context = new SpringApplicationBuilder(Templates.class).web(WebApplicationType.NONE)
+				.bannerMode(Banner.Mode.OFF).logStartupInfo(false)
+				.properties("logging.level.root=WARN", "logging.level.org.springframework=WARN").run();
+		this.engine = this.context.getBean(SpringTemplateEngine.class);
+		this.servletContext = new MockServletContext();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.context.close();
+	}
+
+	/**
+	 * Create a model holding what a Spring MVC view would add for every template.
+	 */
+	public Map<String, Object> model() {
+		Map<String, Object> model = new HashMap<>();
+		model.put(ThymeleafEvaluationContext.THYMELEAF_EVALUATION_CONTEXT_CONTEXT_VARIABLE_NAME,
+				new ThymeleafEvaluationContext(this.context, null));
+		return model;
+	}
+
+	/**
+	 * Render a template, replacing the content of the given buffer.
+	 * @param template the name of the template, e.g. "owners/ownerDetails"
+	 * @param model the model, see {@link #model()}
+	 * @param out the buffer to render into
+	 * @return the number of characters rendered
+	 */
+	public int render(String template, Map<String, Object> model, StringWriter out) {
+		out.getBuffer().setLength(0);
+		MockHttpServletRequest request = new MockHttpServletRequest(this.servletContext);
+		WebContext context = new WebContext(request, new MockHttpServletResponse(), this.servletContext,
+				Locale.ENGLISH, model);
+		this.engine.process(template, context, out);
+		return out.getBuffer().length();
+	}
+
+	/**
+	 * The template engine and what it needs, without the rest of the application.
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@ImportAutoConfiguration({ PropertyPlaceholderAutoConfiguration.class, MessageSourceAutoConfiguration.class,
+			ThymeleafAutoConfiguration.class })
+	static class Templates {
+
+	}
+
+}
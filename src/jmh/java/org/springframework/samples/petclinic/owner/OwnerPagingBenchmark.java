@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.samples.petclinic.BenchmarkDatabase;
+
+/**
+ * Benchmarks reading one page of the list of all owners at increasing depths, by offset
+ * (and counting all owners, as the numbered pages need) or by keyset, continuing after
+ * the last owner of the previous page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OwnerPagingBenchmark {
+
+	private static final int PAGE_SIZE = 5;
+
+	/**
+	 * Position of the page read, as a fraction of all pages.
+	 */
+	@Param({ "0", "0.5", "0.99" })
+	double depth;
+
+	private OwnerRepository owners;
+
+	private Pageable page;
+
+	// last owner of the previous page, or before all owners for the first page
+	private String afterLastName = "";
+
+	private Integer afterId = 0;
+
+	@Setup
+	public void setup(BenchmarkDatabase database) {
+		this.owners = database.getBean(OwnerRepository.class);
+		long total = this.owners.findSummariesByLastName("", PageRequest.of(0, 1)).getTotalElements();
+		this.page = PageRequest.of((int) (this.depth * (total / PAGE_SIZE)), PAGE_SIZE);
+		if (this.page.getOffset() > 0) {
+			OwnerSummary previous = this.owners
+					.findSummariesByLastName("", PageRequest.of((int) this.page.getOffset() - 1, 1)).getContent().get(0);
+			this.afterLastName = previous.getLastName();
+			this.afterId = previous.getId();
+		}
+	}
+
+	@Benchmark
+	public Page<OwnerSummary> offset() {
+		return this.owners.findSummariesByLastName("", this.page);
+	}
+
+	@Benchmark
+	public Slice<OwnerSummary> keyset() {
+		return this.owners.findSummariesByLastNameAfter("", this.afterLastName, this.afterId,
+				PageRequest.of(0, PAGE_SIZE));
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.samples.petclinic.BenchmarkDatabase;
+
+/**
+ * Benchmarks the {@link OwnerRepository} queries behind the owner pages against
+ * {@link BenchmarkDatabase generated data sets}, with random owners and last names. The
+ * owners list is read either as entities, as it used to be, or as summaries plus the
+ * names of their pets, as it is now; run with <code>-prof gc</code> to compare what each
+ * allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OwnerRepositoryBenchmark {
+
+	private static final Pageable FIRST_PAGE = PageRequest.of(0, 5);
+
+	private final SplittableRandom random = new SplittableRandom(42);
+
+	private OwnerRepository owners;
+
+	private BenchmarkDatabase database;
+
+	@Setup
+	public void setup(BenchmarkDatabase database) {
+		this.owners = database.getBean(OwnerRepository.class);
+		this.database = database;
+	}
+
+	@Benchmark
+	public Owner findById(BenchmarkDatabase database) {
+		return this.owners.findById(database.ownerId(this.random.nextInt(database.owners)));
+	}
+
+	@Benchmark
+	public Page<Owner> findByLastName() {
+		return this.owners.findByLastName(this.database.lastName(this.random), FIRST_PAGE);
+	}
+
+	@Benchmark
+	public void findSummariesByLastName(Blackhole blackhole) {
+		Page<OwnerSummary> page = this.owners.findSummariesByLastName(this.database.lastName(this.random), FIRST_PAGE);
+		blackhole.consume(page);
+		if (page.hasContent()) {
+			List<Integer> ids = page.getContent().stream().map(OwnerSummary::getId).collect(Collectors.toList());
+			blackhole.consume(this.owners.findPetNames(ids));
+		}
+	}
+
+}
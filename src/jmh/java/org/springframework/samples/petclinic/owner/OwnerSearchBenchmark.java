@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.samples.petclinic.system.DataGenerator;
+
+/**
+ * Benchmarks the in-memory owner name indexes, {@link OwnerTrigramIndex} for
+ * typo-tolerant search and {@link OwnerNameIndex} for autocompletion, with up to a
+ * million owners, named by {@link DataGenerator#syntheticName(SplittableRandom)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OwnerSearchBenchmark {
+
+	@Param({ "10000", "1000000" })
+	int owners;
+
+	private OwnerTrigramIndex trigrams;
+
+	private OwnerNameIndex names;
+
+	private String typo;
+
+	private String prefix;
+
+	@Setup
+	public void setup() {
+		this.trigrams = new OwnerTrigramIndex(null);
+		this.names = new OwnerNameIndex(null);
+		SplittableRandom random = new SplittableRandom(42);
+		String lastName = null;
+		for (int id = 1; id <= this.owners; id++) {
+			String firstName = DataGenerator.syntheticName(random);
+			lastName = DataGenerator.syntheticName(random);
+			this.trigrams.update(id, firstName, lastName);
+			this.names.update(id, lastName);
+		}
+		// swap two letters of the last name indexed, as in "Davsi" for "Davis"
+		char[] letters = lastName.toCharArray();
+		char swapped = letters[2];
+		letters[2] = letters[3];
+		letters[3] = swapped;
+		this.typo = new String(letters);
+		this.prefix = lastName.substring(0, 3);
+	}
+
+	@Benchmark
+	public List<Integer> searchTypo() {
+		return this.trigrams.search(this.typo, 10);
+	}
+
+	@Benchmark
+	public List<String> completePrefix() {
+		return this.names.complete(this.prefix, 10);
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.samples.petclinic.TemplateRenderer;
+
+/**
+ * Benchmarks rendering the owner details and owners list pages with models of
+ * increasing size, in the shape {@link OwnerController} builds them. Run with
+ * <code>-prof gc</code> to also see the bytes allocated per render.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OwnerTemplateBenchmark {
+
+	private static final int PETS = 2;
+
+	/**
+	 * Rows of the rendered table: the visits of each of the owner's pets on the details
+	 * page, the owners on the list page.
+	 */
+	@Param({ "5", "50", "500" })
+	int rows;
+
+	private final StringWriter out = new StringWriter();
+
+	private Map<String, Object> ownerDetails;
+
+	private Map<String, Object> ownersList;
+
+	@Setup
+	public void setup(TemplateRenderer renderer) {
+		PetType type = new PetType();
+		type.setId(1);
+		type.setName("cat");
+		Owner owner = owner(1);
+		for (int p = 0; p < PETS; p++) {
+			Pet pet = new Pet();
+			pet.setName("Leo" + p);
+			pet.setBirthDate(LocalDate.of(2010, 9, 7));
+			pet.setType(type);
+			for (int v = 0; v < this.rows; v++) {
+				Visit visit = new Visit();
+				visit.setId(p * this.rows + v + 1);
+				visit.setDate(LocalDate.of(2013, 1, 1).plusDays(v));
+				visit.setDescription("rabies shot");
+				pet.addVisit(visit);
+			}
+			// only new pets can be added
+			owner.addPet(pet);
+			pet.setId(p + 1);
+		}
+		this.ownerDetails = renderer.model();
+		this.ownerDetails.put("owner", owner);
+
+		List<OwnerSummary> owners = new ArrayList<>(this.rows);
+		for (int i = 0; i < this.rows; i++) {
+			Owner listed = owner(i + 1);
+			OwnerSummary summary = new OwnerSummary(listed.getId(), listed.getFirstName(), listed.getLastName(),
+					listed.getAddress(), listed.getCity(), listed.getTelephone());
+			summary.addPetName("Leo");
+			summary.addPetName("Basil");
+			owners.add(summary);
+		}
+		this.ownersList = renderer.model();
+		this.ownersList.put("owner", new Owner());
+		this.ownersList.put("listOwners", owners);
+		this.ownersList.put("currentPage", 1);
+		this.ownersList.put("totalPages", 20);
+		this.ownersList.put("totalItems", 20L * this.rows);
+	}
+
+	@Benchmark
+	public int ownerDetails(TemplateRenderer renderer) {
+		return renderer.render("owners/ownerDetails", this.ownerDetails, this.out);
+	}
+
+	@Benchmark
+	public int ownersList(TemplateRenderer renderer) {
+		return renderer.render("owners/ownersList", this.ownersList, this.out);
+	}
+
+	private static Owner owner(int id) {
+		Owner owner = new Owner();
+		owner.setId(id);
+		owner.setFirstName("George");
+		owner.setLastName("Franklin");
+		owner.setAddress("110 W. Liberty St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551023");
+		return owner;
+	}
+
+}
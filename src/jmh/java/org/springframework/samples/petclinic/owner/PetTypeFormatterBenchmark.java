@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.samples.petclinic.model.NamedEntities;
+import org.springframework.samples.petclinic.system.ReferenceData;
+
+/**
+ * Benchmarks {@link PetTypeFormatter}, which converts the pet type of every pet form
+ * submission and every rendered pet, with the six pet types of the sample data and with
+ * a hundred.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PetTypeFormatterBenchmark {
+
+	@Param({ "6", "100" })
+	int types;
+
+	private PetTypeFormatter formatter;
+
+	private PetType type;
+
+	@Setup
+	public void setup() {
+		List<PetType> petTypes = new ArrayList<>();
+		for (int i = 1; i <= this.types; i++) {
+			PetType petType = new PetType();
+			petType.setId(i);
+			petType.setName("type" + i);
+			petTypes.add(petType);
+		}
+		NamedEntities<PetType> entities = NamedEntities.of(petTypes);
+		this.formatter = new PetTypeFormatter(new ReferenceData(null, null) {
+
+			@Override
+			public NamedEntities<PetType> getPetTypes() {
+				return entities;
+			}
+
+		});
+		this.type = petTypes.get(petTypes.size() - 1);
+	}
+
+	@Benchmark
+	public PetType parse() throws ParseException {
+		return this.formatter.parse(this.type.getName(), Locale.ENGLISH);
+	}
+
+	@Benchmark
+	public String print() {
+		return this.formatter.print(this.type, Locale.ENGLISH);
+	}
+
+}
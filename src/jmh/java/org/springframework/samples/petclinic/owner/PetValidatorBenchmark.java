@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+
+/**
+ * Benchmarks {@link PetValidator} on a valid pet and on an empty one, each with a fresh
+ * {@link Errors} instance as for a form submission.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PetValidatorBenchmark {
+
+	private final PetValidator validator = new PetValidator();
+
+	private Pet valid;
+
+	private Pet invalid;
+
+	@Setup
+	public void setup() {
+		PetType cat = new PetType();
+		cat.setId(1);
+		cat.setName("cat");
+		this.valid = new Pet();
+		this.valid.setName("Leo");
+		this.valid.setBirthDate(LocalDate.of(2010, 9, 7));
+		this.valid.setType(cat);
+		this.invalid = new Pet();
+	}
+
+	@Benchmark
+	public Errors validateValid() {
+		Errors errors = new BeanPropertyBindingResult(this.valid, "pet");
+		this.validator.validate(this.valid, errors);
+		return errors;
+	}
+
+	@Benchmark
+	public Errors validateInvalid() {
+		Errors errors = new BeanPropertyBindingResult(this.invalid, "pet");
+		this.validator.validate(this.invalid, errors);
+		return errors;
+	}
+
+}
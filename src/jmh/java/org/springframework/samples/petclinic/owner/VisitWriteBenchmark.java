@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.samples.petclinic.BenchmarkDatabase;
+
+/**
+ * Benchmarks adding a visit to a random pet, either inserted directly by
+ * {@link VisitRepository} or merged into the whole owner through
+ * {@link OwnerRepository#save(Owner)}. Every invocation adds a row to the generated data
+ * set.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class VisitWriteBenchmark {
+
+	private final SplittableRandom random = new SplittableRandom(42);
+
+	private OwnerRepository owners;
+
+	private VisitRepository visits;
+
+	private int[] petOwnerIds;
+
+	@Setup
+	public void setup(BenchmarkDatabase database) {
+		this.owners = database.getBean(OwnerRepository.class);
+		this.visits = database.getBean(VisitRepository.class);
+		this.petOwnerIds = database.petOwnerIds();
+	}
+
+	@Benchmark
+	public boolean insert(BenchmarkDatabase database) {
+		int pet = this.random.nextInt(this.petOwnerIds.length);
+		return this.visits.addVisit(this.petOwnerIds[pet], database.petId(pet), visit());
+	}
+
+	@Benchmark
+	public Owner merge(BenchmarkDatabase database) {
+		int pet = this.random.nextInt(this.petOwnerIds.length);
+		Owner owner = this.owners.findById(this.petOwnerIds[pet]);
+		owner.addVisit(database.petId(pet), visit());
+		return this.owners.save(owner);
+	}
+
+	private static Visit visit() {
+		Visit visit = new Visit();
+		visit.setDate(LocalDate.now());
+		visit.setDescription("rabies shot");
+		return visit;
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vet;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.samples.petclinic.BenchmarkDatabase;
+
+/**
+ * Benchmarks reading random pages of vets with {@link VetRepository#findAll(org.springframework.data.domain.Pageable)}
+ * against {@link BenchmarkDatabase generated data sets}, which have a vet for every
+ * {@value BenchmarkDatabase#OWNERS_PER_VET} owners.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class VetRepositoryBenchmark {
+
+	private static final int PAGE_SIZE = 5;
+
+	private final SplittableRandom random = new SplittableRandom(42);
+
+	private VetRepository vets;
+
+	private int pages;
+
+	@Setup
+	public void setup(BenchmarkDatabase database) {
+		this.vets = database.getBean(VetRepository.class);
+		this.pages = this.vets.findAll(PageRequest.of(0, PAGE_SIZE)).getTotalPages();
+	}
+
+	@Benchmark
+	public Page<Vet> findAll() {
+		return this.vets.findAll(PageRequest.of(this.random.nextInt(this.pages), PAGE_SIZE));
+	}
+
+}
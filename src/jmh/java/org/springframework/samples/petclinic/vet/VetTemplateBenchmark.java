@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vet;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.samples.petclinic.TemplateRenderer;
+
+/**
+ * Benchmarks rendering the vet list page with an increasing number of vets, each with
+ * two specialties. Run with <code>-prof gc</code> to also see the bytes allocated per
+ * render.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VetTemplateBenchmark {
+
+	@Param({ "5", "50", "500" })
+	int vets;
+
+	private final StringWriter out = new StringWriter();
+
+	private Map<String, Object> vetList;
+
+	@Setup
+	public void setup(TemplateRenderer renderer) {
+		Specialty radiology = specialty(1, "radiology");
+		Specialty surgery = specialty(2, "surgery");
+		List<Vet> listVets = new ArrayList<>(this.vets);
+		for (int i = 0; i < this.vets; i++) {
+			Vet vet = new Vet();
+			vet.setId(i + 1);
+			vet.setFirstName("Helen");
+			vet.setLastName("Leary");
+			vet.addSpecialty(radiology);
+			vet.addSpecialty(surgery);
+			listVets.add(vet);
+		}
+		this.vetList = renderer.model();
+		this.vetList.put("listVets", listVets);
+		this.vetList.put("currentPage", 1);
+		this.vetList.put("totalPages", 20);
+		this.vetList.put("totalItems", 20L * this.vets);
+	}
+
+	@Benchmark
+	public int vetList(TemplateRenderer renderer) {
+		return renderer.render("vets/vetList", this.vetList, this.out);
+	}
+
+	private static Specialty specialty(int id, String name) {
+		Specialty specialty = new Specialty();
+		specialty.setId(id);
+		specialty.setName(name);
+		return specialty;
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.samples.petclinic.system.AccessLog;
+
+/**
+ * Latency histograms of a replay, per route and overall, written as a Markdown table and
+ * as an HdrHistogram percentile distribution per route, which can be plotted with
+ * <a href="https://hdrhistogram.github.io/HdrHistogram/plotFiles.html">the HdrHistogram
+ * plotter</a>.
+ * <p>
+ * A route is the method and the path of a request with its numeric segments replaced,
+ * e.g. <code>GET /owners/{id}</code>. Each route keeps three histograms, in
+ * microseconds: the response time measured from when the request should have been sent,
+ * which includes any time spent waiting for a connection; the service time measured from
+ * when it was actually sent; and the time recorded in the access log, for comparison.
+ */
+final class LatencyReport {
+
+	static final String ALL = "all";
+
+	private static final int SIGNIFICANT_DIGITS = 3;
+
+	private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+	private final Route all = new Route();
+
+	/**
+	 * Return the route of a request.
+	 */
+	static String route(AccessLog.Entry entry) {
+		String[] segments = entry.getPath().split("/", -1);
+		for (int i = 0; i < segments.length; i++) {
+			if (!segments[i].isEmpty() && segments[i].chars().allMatch(Character::isDigit)) {
+				segments[i] = "{id}";
+			}
+		}
+		return entry.getMethod() + " " + String.join("/", segments);
+	}
+
+	/**
+	 * Record a replayed request.
+	 * @param entry the request as recorded
+	 * @param status the status of the response, or {@code -1} if the request failed
+	 * @param responseNanos the time from when the request was due until it completed
+	 * @param serviceNanos the time from when the request was sent until it completed
+	 */
+	void record(AccessLog.Entry entry, int status, long responseNanos, long serviceNanos) {
+		Route route = this.routes.computeIfAbsent(route(entry), key -> new Route());
+		for (Route target : new Route[] { route, this.all }) {
+			target.response.recordValue(TimeUnit.NANOSECONDS.toMicros(responseNanos));
+			target.service.recordValue(TimeUnit.NANOSECONDS.toMicros(serviceNanos));
+			target.recorded.recordValue(entry.getDurationMicros());
+			if (status < 0 || status >= 500) {
+				target.errors.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Write the report into the given directory: <code>report.md</code>, and a
+	 * <code>.hgrm</code> file of the response times of each route.
+	 * @param directory the directory to write to, created if needed
+	 * @param title a description of the replay, for the heading of the report
+	 * @return the Markdown report
+	 */
+	String write(Path directory, String title) throws IOException {
+		Files.createDirectories(directory);
+		List<String> names = new ArrayList<>(this.routes.keySet());
+		// busiest routes first
+		names.sort((left, right) -> Long.compare(this.routes.get(right).response.getTotalCount(),
+				this.routes.get(left).response.getTotalCount()));
+		names.add(ALL);
+		StringBuilder report = new StringBuilder();
+		report.append("# ").append(title).append("\n\n");
+		report.append("Response times are measured from when requests were due, service times from when they ");
+		report.append("were sent, in milliseconds.\n\n");
+		report.append("| Route | Requests | Errors | p50 | p90 | p99 | p99.9 | Max | Service p99 | Recorded p99 |\n");
+		report.append("|---|---:|---:|---:|---:|---:|---:|---:|---:|---:|\n");
+		for (String name : names) {
+			Route route = ALL.equals(name) ? this.all : this.routes.get(name);
+			Histogram response = route.response;
+			report.append("| ").append(name).append(" | ").append(response.getTotalCount()).append(" | ");
+			report.append(route.errors.get()).append(" | ");
+			for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+				report.append(millis(response.getValueAtPercentile(percentile))).append(" | ");
+			}
+			report.append(millis(response.getMaxValue())).append(" | ");
+			report.append(millis(route.service.getValueAtPercentile(99))).append(" | ");
+			report.append(millis(route.recorded.getValueAtPercentile(99))).append(" |\n");
+			try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(fileName(name) + ".hgrm")),
+					false, StandardCharsets.UTF_8.name())) {
+				// scaled to milliseconds
+				response.outputPercentileDistribution(out, 1000.0);
+			}
+		}
+		try (PrintWriter out = new PrintWriter(
+				Files.newBufferedWriter(directory.resolve("report.md"), StandardCharsets.UTF_8))) {
+			out.print(report);
+		}
+		return report.toString();
+	}
+
+	private static String millis(long micros) {
+		return String.format(Locale.ROOT, "%.2f", micros / 1000.0);
+	}
+
+	private static String fileName(String route) {
+		return route.replaceAll("[^A-Za-z0-9.-]+", "_").replaceAll("_$", "");
+	}
+
+	private static final class Route {
+
+		private final Histogram response = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+
+		private final Histogram service = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+
+		private final Histogram recorded = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+
+		private final AtomicLong errors = new AtomicLong();
+
+	}
+
+}
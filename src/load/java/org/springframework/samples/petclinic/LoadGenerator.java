@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.samples.petclinic.system.AccessLog;
+
+/**
+ * Replays an access log recorded with <code>petclinic.access-log.file</code> against a
+ * running application, optionally sped up, and reports the latencies per route (see
+ * {@link LatencyReport}).
+ * <p>
+ * Requests are sent on an open-loop schedule: each is due at the time it was recorded,
+ * divided by the speedup, whether or not earlier requests have completed, and its
+ * response time is measured from when it was due. A closed loop, waiting for a response
+ * before sending the next request, would send fewer requests exactly when the
+ * application slows down and leave the slowest moments out of the percentiles
+ * ("coordinated omission"). Requests due while all connections are busy wait for one,
+ * and that wait counts towards their response time.
+ * <p>
+ * Request parameters are sent as a form for POST, PUT and PATCH requests, and as the
+ * query string otherwise. The ids in the paths are replayed as recorded, so the
+ * application should hold the same data as when the log was recorded, e.g. generated
+ * with the same seed by the "generate" profile. Redirects are not followed, the requests
+ * of the browser following them are in the log.
+ * <p>
+ * Usage:
+ * <code>LoadGenerator &lt;access.log&gt; &lt;url&gt; [speedup] [connections] [report directory]</code>
+ */
+public final class LoadGenerator {
+
+	private static final int CONNECT_TIMEOUT = 10_000;
+
+	private static final int READ_TIMEOUT = 60_000;
+
+	private final String url;
+
+	private final double speedup;
+
+	private final int connections;
+
+	private final LatencyReport report = new LatencyReport();
+
+	LoadGenerator(String url, double speedup, int connections) {
+		this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+		this.speedup = speedup;
+		this.connections = connections;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: LoadGenerator <access.log> <url> [speedup] [connections] [report directory]");
+			System.exit(1);
+		}
+		double speedup = (args.length > 2) ? Double.parseDouble(args[2]) : 1;
+		int connections = (args.length > 3) ? Integer.parseInt(args[3]) : 64;
+		String directory = (args.length > 4) ? args[4] : "target/load-report";
+		List<AccessLog.Entry> entries = read(args[0]);
+		// idle connections kept alive for reuse, 5 by default
+		System.setProperty("http.maxConnections", String.valueOf(connections));
+		LoadGenerator generator = new LoadGenerator(args[1], speedup, connections);
+		System.out.println("Replaying " + entries.size() + " requests against " + args[1] + " at " + speedup
+				+ "x with " + connections + " connections");
+		long elapsed = generator.replay(entries);
+		String title = String.format(Locale.ROOT, "Replay of %d requests at %sx in %.1f s", entries.size(),
+				(args.length > 2) ? args[2] : "1", elapsed / 1e9);
+		System.out.println(generator.report.write(Paths.get(directory), title));
+		System.out.println("Wrote " + directory);
+	}
+
+	/**
+	 * Read all records of an access log, ordered by the time the requests started.
+	 */
+	static List<AccessLog.Entry> read(String file) throws IOException {
+		List<AccessLog.Entry> entries = new ArrayList<>();
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(file)), 64 * 1024);
+				AccessLog.Reader reader = new AccessLog.Reader(in)) {
+			for (AccessLog.Entry entry = reader.read(); entry != null; entry = reader.read()) {
+				entries.add(entry);
+			}
+		}
+		// records are written as requests complete
+		entries.sort(Comparator.comparingLong(AccessLog.Entry::getStartMicros));
+		return entries;
+	}
+
+	/**
+	 * Send the requests on schedule and wait for all responses.
+	 * @param entries the requests, ordered by start time
+	 * @return the time taken, in nanoseconds
+	 */
+	long replay(List<AccessLog.Entry> entries) throws InterruptedException {
+		if (entries.isEmpty()) {
+			return 0;
+		}
+		// unbounded queue, so that the schedule never waits for a connection
+		ExecutorService senders = Executors.newFixedThreadPool(this.connections);
+		long first = entries.get(0).getStartMicros();
+		long origin = System.nanoTime();
+		for (AccessLog.Entry entry : entries) {
+			long due = origin + (long) (TimeUnit.MICROSECONDS.toNanos(entry.getStartMicros() - first) / this.speedup);
+			for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+				LockSupport.parkNanos(wait);
+			}
+			senders.execute(() -> send(entry, due));
+		}
+		senders.shutdown();
+		senders.awaitTermination(1, TimeUnit.DAYS);
+		return System.nanoTime() - origin;
+	}
+
+	private void send(AccessLog.Entry entry, long due) {
+		long sent = System.nanoTime();
+		int status;
+		try {
+			status = exchange(entry);
+		}
+		catch (IOException ex) {
+			status = -1;
+		}
+		long completed = System.nanoTime();
+		this.report.record(entry, status, completed - due, completed - sent);
+	}
+
+	private int exchange(AccessLog.Entry entry) throws IOException {
+		String parameters = encode(entry.getParameters());
+		boolean form = !parameters.isEmpty() && Arrays.asList("POST", "PUT", "PATCH").contains(entry.getMethod());
+		String target = this.url + entry.getPath() + ((form || parameters.isEmpty()) ? "" : "?" + parameters);
+		HttpURLConnection connection = (HttpURLConnection) new URL(target).openConnection();
+		connection.setRequestMethod(entry.getMethod());
+		connection.setInstanceFollowRedirects(false);
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
+		if (form) {
+			byte[] body = parameters.getBytes(StandardCharsets.US_ASCII);
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+			connection.setFixedLengthStreamingMode(body.length);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body);
+			}
+		}
+		int status = connection.getResponseCode();
+		InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+		if (in != null) {
+			// read to the end, so that the connection is reused
+			try (InputStream body = in) {
+				byte[] buffer = new byte[8192];
+				while (body.read(buffer) >= 0) {
+					// discard
+				}
+			}
+		}
+		return status;
+	}
+
+	private static String encode(Map<String, String[]> parameters) throws UnsupportedEncodingException {
+		StringBuilder encoded = new StringBuilder();
+		for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+			for (String value : parameter.getValue()) {
+				if (encoded.length() > 0) {
+					encoded.append('&');
+				}
+				encoded.append(URLEncoder.encode(parameter.getKey(), "UTF-8")).append('=');
+				encoded.append(URLEncoder.encode(value, "UTF-8"));
+			}
+		}
+		return encoded.toString();
+	}
+
+}
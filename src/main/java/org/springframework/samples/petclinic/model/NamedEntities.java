@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable set of {@link NamedEntity}s, indexed by id and by name. The entities are
+ * shared by every reader and must not be modified.
+ *
+ * @param <T> the entity type
+ */
+public final class NamedEntities<T extends NamedEntity> {
+
+	private final List<T> all;
+
+	private final Map<Integer, T> byId;
+
+	private final Map<String, T> byName;
+
+	private NamedEntities(List<T> all) {
+		this.all = Collections.unmodifiableList(all);
+		this.byId = new HashMap<>(all.size() * 2);
+		this.byName = new HashMap<>(all.size() * 2);
+		for (T entity : all) {
+			this.byId.put(entity.getId(), entity);
+			this.byName.putIfAbsent(entity.getName(), entity);
+		}
+	}
+
+	/**
+	 * Index the given entities.
+	 * @param entities the entities, in any order
+	 * @return the indexed entities, listed in name order
+	 */
+	public static <T extends NamedEntity> NamedEntities<T> of(Collection<? extends T> entities) {
+		List<T> sorted = new ArrayList<>(entities);
+		sorted.sort(Comparator.comparing(NamedEntity::getName, Comparator.nullsLast(Comparator.naturalOrder())));
+		return new NamedEntities<>(sorted);
+	}
+
+	/**
+	 * Return all entities, sorted by name.
+	 */
+	public List<T> getAll() {
+		return this.all;
+	}
+
+	/**
+	 * Return the entity with the given id, or {@literal null} if none.
+	 */
+	public T findById(Integer id) {
+		return this.byId.get(id);
+	}
+
+	/**
+	 * Return the entity with the given (case-sensitive) name, or {@literal null} if none.
+	 */
+	public T findByName(String name) {
+		return this.byName.get(name);
+	}
+
+	public int size() {
+		return this.all.size();
+	}
+
+}
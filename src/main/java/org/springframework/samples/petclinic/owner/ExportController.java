@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Bulk export of all owners with their pets and visits, as JSON lines or CSV depending on
+ * the requested media type. The export is written straight to the response stream.
+ */
+@Controller
+class ExportController {
+
+	private final OwnerExporter exporter;
+
+	ExportController(OwnerExporter exporter) {
+		this.exporter = exporter;
+	}
+
+	@GetMapping(path = "/owners/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	@ResponseBody
+	public StreamingResponseBody exportJsonLines() {
+		return this.exporter::exportJsonLines;
+	}
+
+	@GetMapping(path = "/owners/export", produces = ImportController.TEXT_CSV_VALUE)
+	@ResponseBody
+	public StreamingResponseBody exportCsv() {
+		return this.exporter::exportCsv;
+	}
+
+}
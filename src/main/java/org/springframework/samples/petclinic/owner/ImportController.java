@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Bulk import endpoints: owners with their pets when onboarding a clinic, and visits
+ * recorded elsewhere, e.g. by partner clinics. The request body is streamed into the
+ * importer; the response reports how many records were imported and which lines were
+ * rejected.
+ */
+@Controller
+class ImportController {
+
+	static final String TEXT_CSV_VALUE = "text/csv";
+
+	private final OwnerImporter owners;
+
+	private final VisitImporter visits;
+
+	ImportController(OwnerImporter owners, VisitImporter visits) {
+		this.owners = owners;
+		this.visits = visits;
+	}
+
+	@PostMapping(path = "/owners/import", consumes = TEXT_CSV_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseBody
+	public ImportResult importOwners(Reader body) throws IOException {
+		return this.owners.importCsv(body);
+	}
+
+	@PostMapping(path = "/visits/import", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseBody
+	public ImportResult importVisitJsonLines(Reader body) throws IOException {
+		return this.visits.importJsonLines(body);
+	}
+
+	@PostMapping(path = "/visits/import", consumes = TEXT_CSV_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseBody
+	public ImportResult importVisitCsv(Reader body) throws IOException {
+		return this.visits.importCsv(body);
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.core.style.ToStringCreator;
+
+/**
+ * Outcome of a bulk import: how many records were imported, and which lines were rejected
+ * and why. Only the first {@value #MAX_REPORTED_ERRORS} errors are listed so that the
+ * report stays small however bad the input is.
+ * <p>
+ * Parallel writers may report into the same result, so all access is synchronized.
+ */
+public class ImportResult {
+
+	static final int MAX_REPORTED_ERRORS = 100;
+
+	private long imported;
+
+	private long failed;
+
+	private final List<RowError> errors = new ArrayList<>();
+
+	private long elapsedMillis;
+
+	public synchronized long getImported() {
+		return this.imported;
+	}
+
+	public synchronized long getFailed() {
+		return this.failed;
+	}
+
+	public synchronized List<RowError> getErrors() {
+		return Collections.unmodifiableList(new ArrayList<>(this.errors));
+	}
+
+	public synchronized long getElapsedMillis() {
+		return this.elapsedMillis;
+	}
+
+	/**
+	 * Return the throughput of the import, in imported records per second.
+	 */
+	public synchronized long getRecordsPerSecond() {
+		return (this.elapsedMillis > 0) ? this.imported * 1000 / this.elapsedMillis : this.imported;
+	}
+
+	synchronized void addImported(long count) {
+		this.imported += count;
+	}
+
+	synchronized void addError(long line, String message) {
+		this.failed++;
+		if (this.errors.size() < MAX_REPORTED_ERRORS) {
+			this.errors.add(new RowError(line, message));
+		}
+	}
+
+	synchronized void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return new ToStringCreator(this).append("imported", this.imported).append("failed", this.failed)
+				.append("elapsedMillis", this.elapsedMillis).toString();
+	}
+
+	/**
+	 * A rejected line of the input.
+	 */
+	public static class RowError {
+
+		private final long line;
+
+		private final String message;
+
+		RowError(long line, String message) {
+			this.line = line;
+			this.message = message;
+		}
+
+		/**
+		 * Return the (1-based) number of the rejected line.
+		 */
+		public long getLine() {
+			return this.line;
+		}
+
+		public String getMessage() {
+			return this.message;
+		}
+
+	}
+
+}
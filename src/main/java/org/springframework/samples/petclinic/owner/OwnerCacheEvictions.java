@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Collection;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Evicts {@link Owner}s from the "owners" cache once the current transaction has
+ * committed. Evicting any earlier leaves a window in which a concurrent read caches the
+ * owner as it was before the write again, until the entry expires.
+ */
+final class OwnerCacheEvictions {
+
+	private final ObjectProvider<CacheManager> cacheManager;
+
+	OwnerCacheEvictions(ObjectProvider<CacheManager> cacheManager) {
+		this.cacheManager = cacheManager;
+	}
+
+	/**
+	 * Evict the given owners after commit, or right away outside of a transaction.
+	 * @param ownerIds the ids of the owners to evict
+	 */
+	void evictAfterCommit(Collection<Integer> ownerIds) {
+		CacheManager cacheManager = this.cacheManager.getIfAvailable();
+		Cache owners = (cacheManager != null) ? cacheManager.getCache("owners") : null;
+		if (owners == null || ownerIds.isEmpty()) {
+			return;
+		}
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			ownerIds.forEach(owners::evict);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+			@Override
+			public void afterCommit() {
+				ownerIds.forEach(owners::evict);
+			}
+
+		});
+	}
+
+}
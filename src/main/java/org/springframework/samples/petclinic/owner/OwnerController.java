@@ -15,16 +15,24 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.validation.Valid;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -33,6 +41,7 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.ModelAndView;
 
 /**
@@ -46,28 +55,49 @@ class OwnerController {
 
 	private static final String VIEWS_OWNER_CREATE_OR_UPDATE_FORM = "owners/createOrUpdateOwnerForm";
 
+	private static final int MAX_AUTOCOMPLETE_RESULTS = 50;
+
 	private final OwnerRepository owners;
 
-	public OwnerController(OwnerRepository clinicService) {
+	private final OwnerIdentityMap loadedOwners;
+
+	private final OwnerNameIndex ownerNames;
+
+	private final OwnerTrigramIndex similarNames;
+
+	private final int pageSize;
+
+	public OwnerController(OwnerRepository clinicService, OwnerIdentityMap loadedOwners, OwnerNameIndex ownerNames,
+			OwnerTrigramIndex similarNames, @Value("${petclinic.owners.page-size:5}") int pageSize) {
 		this.owners = clinicService;
+		this.loadedOwners = loadedOwners;
+		this.ownerNames = ownerNames;
+		this.similarNames = similarNames;
+		this.pageSize = pageSize;
 	}
 
 	@InitBinder
 	public void setAllowedFields(WebDataBinder dataBinder) {
 		dataBinder.setDisallowedFields("id");
 	}
-    /* https://www.baeldung.com/spring-mvc-and-the-modelattribute-annotation
-     * When we use the annotation at the method level, it indicates the purpose of the method is to add one or more model attributes.
-     * @ModelAttribute methods are invoked before the controller methods annotated with @RequestMapping are invoked. This call to the @ModelAttribute annotated method
-     * happens before each call to handler methods
-     * When we use the annotation as a method argument, it indicates to retrieve the argument from the model. 
-     * Ex public String submit(@ModelAttribute("employee") Employee employee). 
-     * A lookup of the string employee happens against the Model object and the correspondng Employee object is returned 
-     *      
-     *      */
+
+	/*
+	 * https://www.baeldung.com/spring-mvc-and-the-modelattribute-annotation When we use
+	 * the annotation at the method level, it indicates the purpose of the method is to
+	 * add one or more model attributes.
+	 *
+	 * @ModelAttribute methods are invoked before the controller methods annotated
+	 * with @RequestMapping are invoked. This call to the @ModelAttribute annotated method
+	 * happens before each call to handler methods When we use the annotation as a method
+	 * argument, it indicates to retrieve the argument from the model. Ex public String
+	 * submit(@ModelAttribute("employee") Employee employee). A lookup of the string
+	 * employee happens against the Model object and the correspondng Employee object is
+	 * returned
+	 *
+	 */
 	@ModelAttribute("owner")
 	public Owner findOwner(@PathVariable(name = "ownerId", required = false) Integer ownerId) {
-		return ownerId == null ? new Owner() : this.owners.findById(ownerId);
+		return ownerId == null ? new Owner() : this.loadedOwners.findById(ownerId);
 	}
 
 	@GetMapping("/owners/new")
@@ -75,10 +105,14 @@ class OwnerController {
 		Owner owner = new Owner();
 		model.put("owner", owner);
 		/*
-		 *  A String return value by default refers to a view name. If you want it to be the response then add the @ResponseBody annotation
-		 *  the @ResponseBody annotation tells the controller that the object returned should be automatically serialized to the configured media type
-		 *  @GetMapping(value = "/welcome", produces = MediaType.TEXT_HTML_VALUE)
-		 *  @ResponseBody. Reference https://www.baeldung.com/spring-mvc-return-html
+		 * A String return value by default refers to a view name. If you want it to be
+		 * the response then add the @ResponseBody annotation the @ResponseBody annotation
+		 * tells the controller that the object returned should be automatically
+		 * serialized to the configured media type
+		 *
+		 * @GetMapping(value = "/welcome", produces = MediaType.TEXT_HTML_VALUE)
+		 *
+		 * @ResponseBody. Reference https://www.baeldung.com/spring-mvc-return-html
 		 */
 		return VIEWS_OWNER_CREATE_OR_UPDATE_FORM;
 	}
@@ -90,18 +124,25 @@ class OwnerController {
 		}
 		else {
 			/*
-			 * It is sometimes desirable to issue an HTTP redirect back to the client, before the view is rendered. 
-			 * This is desirable for example when one controller has been called with POSTed data, and the response is actually a 
-			 * delegation to another controller (for example on a successful form submission). 
-			 * In this case, a normal internal forward will mean the other controller will also see the same POST data, 
-			 * which is potentially problematic if it can confuse it with other expected data. Another reason to do a redirect before 
-			 * displaying the result is that this will eliminate the possibility of the user doing a double submission of form data. 
-			 * The browser will have sent the initial POST, will have seen a redirect back and done a subsequent GET because of that, 
-			 * and thus as far as it is concerned, the current page does not reflect the result of a POST, 
-			 * but rather of a GET, so there is no way the user can accidentally re-POST the same data by doing a refresh. 
-			 * The refresh forces a GET of the result page, not a resend of the initial POST data.
+			 * It is sometimes desirable to issue an HTTP redirect back to the client,
+			 * before the view is rendered. This is desirable for example when one
+			 * controller has been called with POSTed data, and the response is actually a
+			 * delegation to another controller (for example on a successful form
+			 * submission). In this case, a normal internal forward will mean the other
+			 * controller will also see the same POST data, which is potentially
+			 * problematic if it can confuse it with other expected data. Another reason
+			 * to do a redirect before displaying the result is that this will eliminate
+			 * the possibility of the user doing a double submission of form data. The
+			 * browser will have sent the initial POST, will have seen a redirect back and
+			 * done a subsequent GET because of that, and thus as far as it is concerned,
+			 * the current page does not reflect the result of a POST, but rather of a
+			 * GET, so there is no way the user can accidentally re-POST the same data by
+			 * doing a refresh. The refresh forces a GET of the result page, not a resend
+			 * of the initial POST data.
 			 */
 			this.owners.save(owner);
+			this.ownerNames.update(owner.getId(), owner.getLastName());
+			this.similarNames.update(owner.getId(), owner.getFirstName(), owner.getLastName());
 			return "redirect:/owners/" + owner.getId();
 		}
 	}
@@ -110,19 +151,25 @@ class OwnerController {
 	public String initFindForm(Map<String, Object> model) {
 		model.put("owner", new Owner());
 		/*
-		 * Thymeleaf is the template engine used in the PetClinic application.As with many things, 
-		 * Spring Boot provides a default location where it expects to find our templates.By default, Spring Boot looks for our templates in src/main/resources/templates. We can put our templates there and 
-		 * organize them in sub-directories. https://www.baeldung.com/spring-thymeleaf-template-directory 
+		 * Thymeleaf is the template engine used in the PetClinic application.As with many
+		 * things, Spring Boot provides a default location where it expects to find our
+		 * templates.By default, Spring Boot looks for our templates in
+		 * src/main/resources/templates. We can put our templates there and organize them
+		 * in sub-directories.
+		 * https://www.baeldung.com/spring-thymeleaf-template-directory
 		 */
 		return "owners/findOwners";
 	}
 
 	@GetMapping("/owners")
-	public String processFindForm(@RequestParam(defaultValue = "1") int page, Owner owner, BindingResult result,
-			Model model) {
-		/* Model interface is available in the org.springframework.ui package. It acts as a data container that contains the data of the application. 
-		 * That stored data can be of any form such as String, Object, data from the Database, etc.
-		 * https://www.geeksforgeeks.org/spring-mvc-model-interface/ 
+	public String processFindForm(@RequestParam(defaultValue = "1") int page,
+			@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "false") boolean fuzzy,
+			Owner owner, BindingResult result, Model model) {
+		/*
+		 * Model interface is available in the org.springframework.ui package. It acts as
+		 * a data container that contains the data of the application. That stored data
+		 * can be of any form such as String, Object, data from the Database, etc.
+		 * https://www.geeksforgeeks.org/spring-mvc-model-interface/
 		 */
 
 		// allow parameterless GET request for /owners to return all records
@@ -130,62 +177,177 @@ class OwnerController {
 			owner.setLastName(""); // empty string signifies broadest possible search
 		}
 
+		// typo-tolerant search ranks owners by name similarity, on a single page
+		if (fuzzy && StringUtils.hasText(owner.getLastName())) {
+			List<OwnerSummary> similarOwners = findSimilarOwners(owner.getLastName());
+			if (similarOwners.isEmpty()) {
+				result.rejectValue("lastName", "notFound", "not found");
+				return "owners/findOwners";
+			}
+			return addSimilarOwnersModel(model, similarOwners, false);
+		}
+
+		// "next" and "previous" links carry a cursor and seek straight to it, explicit
+		// page jumps fall back to offset paging
+		OwnerCursor position = OwnerCursor.decode(cursor);
+		if (position != null) {
+			Slice<OwnerSummary> ownersResults = seekPaginatedForOwnersLastName(page, position, owner.getLastName());
+			if (ownersResults.hasContent()) {
+				return addPaginationModel(model, ownersResults);
+			}
+			// stale cursor (rows removed in the meantime), start over
+			page = 1;
+		}
+
 		// find owners by last name
-		Page<Owner> ownersResults = findPaginatedForOwnersLastName(page, owner.getLastName());
-		if (ownersResults.isEmpty()) {
-			// no owners found
+		Page<OwnerSummary> ownersResults = findPaginatedForOwnersLastName(page, owner.getLastName());
+		if (ownersResults.isEmpty() && ownersResults.getTotalElements() > 0) {
+			// page past the end (stale bookmark or edited link), show the last one
+			// instead
+			ownersResults = findPaginatedForOwnersLastName(ownersResults.getTotalPages(), owner.getLastName());
+		}
+		if (ownersResults.getTotalElements() == 0) {
+			// no owners found, the name may just be misspelled
+			List<OwnerSummary> similarOwners = findSimilarOwners(owner.getLastName());
+			if (!similarOwners.isEmpty()) {
+				return addSimilarOwnersModel(model, similarOwners, true);
+			}
 			result.rejectValue("lastName", "notFound", "not found");
 			return "owners/findOwners";
 		}
 		else if (ownersResults.getTotalElements() == 1) {
 			// 1 owner found
-			owner = ownersResults.iterator().next();
-			return "redirect:/owners/" + owner.getId();
+			return "redirect:/owners/" + ownersResults.iterator().next().getId();
 		}
 		else {
 			// multiple owners found
-			return addPaginationModel(page, model, ownersResults);
+			return addPaginationModel(model, ownersResults);
 		}
 	}
 
-	private String addPaginationModel(int page, Model model, Page<Owner> paginated) {
-		model.addAttribute("listOwners", paginated);
-		List<Owner> listOwners = paginated.getContent();
-		model.addAttribute("currentPage", page);
-		model.addAttribute("totalPages", paginated.getTotalPages());
-		model.addAttribute("totalItems", paginated.getTotalElements());
+	/**
+	 * Suggest last names for the find owners form, served from {@link OwnerNameIndex}
+	 * without querying the database.
+	 * @param lastName the prefix typed so far
+	 * @param limit the maximum number of suggestions
+	 * @return matching last names in alphabetical order
+	 */
+	@GetMapping(path = "/owners/autocomplete", produces = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseBody
+	public List<String> autocompleteLastName(@RequestParam(defaultValue = "") String lastName,
+			@RequestParam(defaultValue = "10") int limit) {
+		return this.ownerNames.complete(lastName, Math.min(limit, MAX_AUTOCOMPLETE_RESULTS));
+	}
+
+	private String addPaginationModel(Model model, Slice<OwnerSummary> paginated) {
+		List<OwnerSummary> listOwners = paginated.getContent();
+		addPetNames(listOwners);
+		model.addAttribute("currentPage", paginated.getNumber() + 1);
+		if (paginated instanceof Page) {
+			// only offset pages know their totals, seeking skips the count query
+			Page<OwnerSummary> page = (Page<OwnerSummary>) paginated;
+			model.addAttribute("totalPages", page.getTotalPages());
+			model.addAttribute("totalItems", page.getTotalElements());
+		}
+		if (paginated.hasNext()) {
+			model.addAttribute("nextCursor", OwnerCursor.after(listOwners.get(listOwners.size() - 1)).encode());
+		}
+		if (paginated.hasPrevious()) {
+			model.addAttribute("previousCursor", OwnerCursor.before(listOwners.get(0)).encode());
+		}
 		model.addAttribute("listOwners", listOwners);
 		return "owners/ownersList";
 	}
 
-	private Page<Owner> findPaginatedForOwnersLastName(int page, String lastname) {
+	private String addSimilarOwnersModel(Model model, List<OwnerSummary> similarOwners, boolean noExactMatch) {
+		addPetNames(similarOwners);
+		model.addAttribute("currentPage", 1);
+		model.addAttribute("similar", true);
+		// only worth a notice when the user asked for an exact search
+		model.addAttribute("noExactMatch", noExactMatch);
+		model.addAttribute("listOwners", similarOwners);
+		return "owners/ownersList";
+	}
+
+	private List<OwnerSummary> findSimilarOwners(String name) {
+		List<Integer> ownerIds = this.similarNames.search(name, this.pageSize);
+		if (ownerIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		// restore the similarity ranking, the query returns the rows in any order
+		OwnerSummary[] ranked = new OwnerSummary[ownerIds.size()];
+		for (OwnerSummary summary : this.owners.findSummariesByIds(ownerIds)) {
+			ranked[ownerIds.indexOf(summary.getId())] = summary;
+		}
+		List<OwnerSummary> similarOwners = new ArrayList<>(ranked.length);
+		for (OwnerSummary summary : ranked) {
+			if (summary != null) {
+				similarOwners.add(summary);
+			}
+		}
+		return similarOwners;
+	}
+
+	private void addPetNames(List<OwnerSummary> listOwners) {
+		Map<Integer, OwnerSummary> byId = new HashMap<>();
+		for (OwnerSummary summary : listOwners) {
+			byId.put(summary.getId(), summary);
+		}
+		for (OwnerSummary.PetName petName : this.owners.findPetNames(byId.keySet())) {
+			byId.get(petName.getOwnerId()).addPetName(petName.getName());
+		}
+	}
 
-		int pageSize = 5;
-		Pageable pageable = PageRequest.of(page - 1, pageSize);
-		return owners.findByLastName(lastname, pageable);
+	private Page<OwnerSummary> findPaginatedForOwnersLastName(int page, String lastname) {
+		Pageable pageable = PageRequest.of(Math.max(page, 1) - 1, this.pageSize);
+		return owners.findSummariesByLastName(lastname, pageable);
+	}
 
+	private Slice<OwnerSummary> seekPaginatedForOwnersLastName(int page, OwnerCursor position, String lastname) {
+		Pageable seek = PageRequest.of(0, this.pageSize);
+		// a cursor always has at least one row before or after it, so the page number is
+		// at least 2 unless seeking backwards runs out of rows
+		int pageIndex = Math.max(page, 2) - 1;
+		if (position.isAfter()) {
+			Slice<OwnerSummary> slice = owners.findSummariesByLastNameAfter(lastname, position.getLastName(),
+					position.getId(), seek);
+			return new SliceImpl<>(slice.getContent(), PageRequest.of(pageIndex, this.pageSize), slice.hasNext());
+		}
+		Slice<OwnerSummary> slice = owners.findSummariesByLastNameBefore(lastname, position.getLastName(),
+				position.getId(), seek);
+		List<OwnerSummary> content = new ArrayList<>(slice.getContent());
+		Collections.reverse(content);
+		return new SliceImpl<>(content, PageRequest.of(slice.hasNext() ? pageIndex : 0, this.pageSize), true);
 	}
 
 	/*
-	 * https://dzone.com/articles/spring-boot-passing-parameters
-	 * Passing parameters when requesting URLs is one of the most basic features in Spring Boot.There are two ways to pass parameters
-	 * 1. Request Parameter https://www.youtube.com/watch?v=tuNhqqxgxXQ&t=153s In the above URL, there are two parameters which are v and t. To pass the parameters, put “?”. Then, add the parameter name followed by “=” and the value of the parameter. It will look like this “?v=value”. 
-	 * To pass another, use “&” followed by the second parameter as the first one.
-	 * 2. Path Variable - http://www.twitter.com/hashimati. The word “hashimati” in this URL is a variable.
+	 * https://dzone.com/articles/spring-boot-passing-parameters Passing parameters when
+	 * requesting URLs is one of the most basic features in Spring Boot.There are two ways
+	 * to pass parameters 1. Request Parameter
+	 * https://www.youtube.com/watch?v=tuNhqqxgxXQ&t=153s In the above URL, there are two
+	 * parameters which are v and t. To pass the parameters, put “?”. Then, add the
+	 * parameter name followed by “=” and the value of the parameter. It will look like
+	 * this “?v=value”. To pass another, use “&” followed by the second parameter as the
+	 * first one. 2. Path Variable - https://www.twitter.com/hashimati. The word
+	 * “hashimati” in this URL is a variable.
 	 */
-	
+
 	/*
-	 * Path Variable can be handled as in the example below. For Request Parameter there are 2 options
-	 * Option 1 - public String hello1(@RequestParam(name="name", required = false, defaultValue = "Ahmed") String name)--Call out the request param in method signature
-	 * Option 2 - public String hello2(Parms parameters) -- Create a domain object and encapsulate the parameters in an object, Spring will do the binding for you
+	 * Path Variable can be handled as in the example below. For Request Parameter there
+	 * are 2 options Option 1 - public String hello1(@RequestParam(name="name", required =
+	 * false, defaultValue = "Ahmed") String name)--Call out the request param in method
+	 * signature Option 2 - public String hello2(Parms parameters) -- Create a domain
+	 * object and encapsulate the parameters in an object, Spring will do the binding for
+	 * you
 	 */
 	@GetMapping("/owners/{ownerId}/edit")
 	public String initUpdateOwnerForm(@PathVariable("ownerId") int ownerId, Model model) {
 		/*
-		 * @GetMapping or @RequestMapping annotation can be used to construct the dynamic or the run-time URI i.e. to pass in the parameters. 
-		 * This can be achieved by using the @PathVariable
+		 * @GetMapping or @RequestMapping annotation can be used to construct the dynamic
+		 * or the run-time URI i.e. to pass in the parameters. This can be achieved by
+		 * using the @PathVariable
 		 */
-		Owner owner = this.owners.findById(ownerId);
+		Owner owner = this.loadedOwners.findById(ownerId);
 		model.addAttribute(owner);
 		return VIEWS_OWNER_CREATE_OR_UPDATE_FORM;
 	}
@@ -199,6 +361,8 @@ class OwnerController {
 		else {
 			owner.setId(ownerId);
 			this.owners.save(owner);
+			this.ownerNames.update(ownerId, owner.getLastName());
+			this.similarNames.update(ownerId, owner.getFirstName(), owner.getLastName());
 			return "redirect:/owners/{ownerId}";
 		}
 	}
@@ -211,7 +375,7 @@ class OwnerController {
 	@GetMapping("/owners/{ownerId}")
 	public ModelAndView showOwner(@PathVariable("ownerId") int ownerId) {
 		ModelAndView mav = new ModelAndView("owners/ownerDetails");
-		Owner owner = this.owners.findById(ownerId);
+		Owner owner = this.loadedOwners.findById(ownerId);
 		mav.addObject(owner);
 		return mav;
 	}
@@ -219,6 +383,7 @@ class OwnerController {
 }
 
 /*
-https://www.javacodegeeks.com/2018/06/domain-objects-spring-mvc.html
-https://docs.spring.io/spring-framework/docs/current/reference/html/web.html#mvc-ann-modelattrib-method-args
-*/
\ No newline at end of file
+ * https://www.javacodegeeks.com/2018/06/domain-objects-spring-mvc.html
+ * https://docs.spring.io/spring-framework/docs/current/reference/html/web.html#mvc-ann-
+ * modelattrib-method-args
+ */
\ No newline at end of file
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Opaque position in the owners list, keyed on <code>(last_name, id)</code>. Used for
+ * keyset (seek) pagination so that following "next" or "previous" never has to skip over
+ * the rows of the preceding pages.
+ */
+final class OwnerCursor {
+
+	private static final char AFTER = 'a';
+
+	private static final char BEFORE = 'b';
+
+	private final String lastName;
+
+	private final int id;
+
+	private final boolean after;
+
+	private OwnerCursor(String lastName, int id, boolean after) {
+		this.lastName = lastName;
+		this.id = id;
+		this.after = after;
+	}
+
+	/**
+	 * Create a cursor selecting the rows that sort after the given owner.
+	 */
+	static OwnerCursor after(OwnerSummary owner) {
+		return new OwnerCursor(owner.getLastName(), owner.getId(), true);
+	}
+
+	/**
+	 * Create a cursor selecting the rows that sort before the given owner.
+	 */
+	static OwnerCursor before(OwnerSummary owner) {
+		return new OwnerCursor(owner.getLastName(), owner.getId(), false);
+	}
+
+	String getLastName() {
+		return this.lastName;
+	}
+
+	int getId() {
+		return this.id;
+	}
+
+	boolean isAfter() {
+		return this.after;
+	}
+
+	/**
+	 * Encode this cursor as a URL-safe token.
+	 */
+	String encode() {
+		String raw = (this.after ? AFTER : BEFORE) + Integer.toString(this.id) + ':' + this.lastName;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decode a token produced by {@link #encode()}.
+	 * @param token the token, may be {@code null}
+	 * @return the cursor, or {@code null} if the token is absent or malformed
+	 */
+	static OwnerCursor decode(String token) {
+		if (!StringUtils.hasText(token)) {
+			return null;
+		}
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			int separator = raw.indexOf(':');
+			if (separator < 2 || (raw.charAt(0) != AFTER && raw.charAt(0) != BEFORE)) {
+				return null;
+			}
+			int id = Integer.parseInt(raw.substring(1, separator));
+			return new OwnerCursor(raw.substring(separator + 1), id, raw.charAt(0) == AFTER);
+		}
+		catch (IllegalArgumentException ex) {
+			// also covers NumberFormatException
+			return null;
+		}
+	}
+
+}
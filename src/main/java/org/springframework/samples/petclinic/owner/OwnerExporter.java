@@ -0,0 +1,279 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Streams all {@link Owner}s with their {@link Pet}s and {@link Visit}s, e.g. for nightly
+ * extracts of the clinic data.
+ * <p>
+ * A single query joins owners, pets and visits ordered by owner, pet and visit, and is
+ * read through a forward-only, read-only cursor with a fetch size, so the driver holds
+ * only one fetch of rows at a time. Each row is written out as soon as it is read;
+ * nothing is accumulated per owner, so memory stays flat however large the data set is.
+ * (MySQL only honours the fetch size with <code>useCursorFetch=true</code> on the
+ * connection URL.)
+ */
+@Component
+public class OwnerExporter {
+
+	/**
+	 * Columns of the CSV export; owners and pets are repeated on every visit row.
+	 */
+	static final String CSV_HEADER = "ownerId,firstName,lastName,address,city,telephone,"
+			+ "petId,petName,petBirthDate,petType,visitId,visitDate,visitDescription";
+
+	private static final String QUERY = "SELECT o.id, o.first_name, o.last_name, o.address, o.city, o.telephone, "
+			+ "p.id, p.name, p.birth_date, t.name, v.id, v.visit_date, v.description FROM owners o "
+			+ "LEFT JOIN pets p ON p.owner_id = o.id LEFT JOIN types t ON t.id = p.type_id "
+			+ "LEFT JOIN visits v ON v.pet_id = p.id ORDER BY o.id, p.id, v.id";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final ObjectMapper objectMapper;
+
+	private final int fetchSize;
+
+	public OwnerExporter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			ObjectMapper objectMapper, @Value("${petclinic.owners.export.fetch-size:1000}") int fetchSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		// some drivers (e.g. PostgreSQL) only use a cursor inside a transaction
+		this.transactionTemplate.setReadOnly(true);
+		this.objectMapper = objectMapper;
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Write one JSON document per owner, each on its own line, with the owner's pets and
+	 * their visits nested.
+	 * @param output the stream to write to, it is flushed but not closed
+	 */
+	public void exportJsonLines(OutputStream output) throws IOException {
+		try (JsonGenerator json = this.objectMapper.getFactory().createGenerator(output)) {
+			json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			// lines are separated by the handler, not by the default space
+			json.setRootValueSeparator(null);
+			query(new JsonLinesHandler(json));
+			json.flush();
+		}
+	}
+
+	/**
+	 * Write one CSV line per visit, with a header line. Pets without visits and owners
+	 * without pets get a line with empty visit (and pet) columns.
+	 * @param output the stream to write to, it is flushed but not closed
+	 */
+	public void exportCsv(OutputStream output) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+		writer.write(CSV_HEADER);
+		writer.write("\r\n");
+		query(new CsvHandler(writer));
+		writer.flush();
+	}
+
+	private void query(RowHandler handler) throws IOException {
+		try {
+			this.transactionTemplate.executeWithoutResult(status -> this.jdbcTemplate.query(connection -> {
+				PreparedStatement statement = connection.prepareStatement(QUERY, ResultSet.TYPE_FORWARD_ONLY,
+						ResultSet.CONCUR_READ_ONLY);
+				statement.setFetchSize(this.fetchSize);
+				return statement;
+			}, handler));
+			handler.finish();
+		}
+		catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	/**
+	 * Writes the rows of the export query, tracking the owner and pet of the previous
+	 * row.
+	 */
+	private abstract static class RowHandler implements RowCallbackHandler {
+
+		private int ownerId;
+
+		private int petId;
+
+		@Override
+		public final void processRow(ResultSet row) throws SQLException {
+			try {
+				int owner = row.getInt(1);
+				if (owner != this.ownerId) {
+					if (this.ownerId != 0) {
+						endOwner();
+					}
+					this.ownerId = owner;
+					this.petId = 0;
+					startOwner(row);
+				}
+				int pet = row.getInt(7);
+				if (pet != 0 && pet != this.petId) {
+					if (this.petId != 0) {
+						endPet();
+					}
+					this.petId = pet;
+					startPet(row);
+				}
+				writeRow(row);
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		void finish() throws IOException {
+			if (this.ownerId != 0) {
+				endOwner();
+			}
+		}
+
+		void startOwner(ResultSet row) throws SQLException, IOException {
+		}
+
+		void startPet(ResultSet row) throws SQLException, IOException {
+		}
+
+		void endPet() throws IOException {
+		}
+
+		void endOwner() throws IOException {
+		}
+
+		abstract void writeRow(ResultSet row) throws SQLException, IOException;
+
+		static String date(ResultSet row, int column) throws SQLException {
+			Date date = row.getDate(column);
+			return (date != null) ? date.toLocalDate().toString() : null;
+		}
+
+	}
+
+	private static final class JsonLinesHandler extends RowHandler {
+
+		private final JsonGenerator json;
+
+		private boolean inPet;
+
+		JsonLinesHandler(JsonGenerator json) {
+			this.json = json;
+		}
+
+		@Override
+		void startOwner(ResultSet row) throws SQLException, IOException {
+			this.json.writeStartObject();
+			this.json.writeNumberField("id", row.getInt(1));
+			this.json.writeStringField("firstName", row.getString(2));
+			this.json.writeStringField("lastName", row.getString(3));
+			this.json.writeStringField("address", row.getString(4));
+			this.json.writeStringField("city", row.getString(5));
+			this.json.writeStringField("telephone", row.getString(6));
+			this.json.writeArrayFieldStart("pets");
+		}
+
+		@Override
+		void startPet(ResultSet row) throws SQLException, IOException {
+			this.json.writeStartObject();
+			this.json.writeNumberField("id", row.getInt(7));
+			this.json.writeStringField("name", row.getString(8));
+			this.json.writeStringField("birthDate", date(row, 9));
+			this.json.writeStringField("type", row.getString(10));
+			this.json.writeArrayFieldStart("visits");
+			this.inPet = true;
+		}
+
+		@Override
+		void writeRow(ResultSet row) throws SQLException, IOException {
+			int visitId = row.getInt(11);
+			if (visitId != 0) {
+				this.json.writeStartObject();
+				this.json.writeNumberField("id", visitId);
+				this.json.writeStringField("date", date(row, 12));
+				this.json.writeStringField("description", row.getString(13));
+				this.json.writeEndObject();
+			}
+		}
+
+		@Override
+		void endPet() throws IOException {
+			this.json.writeEndArray();
+			this.json.writeEndObject();
+			this.inPet = false;
+		}
+
+		@Override
+		void endOwner() throws IOException {
+			if (this.inPet) {
+				endPet();
+			}
+			this.json.writeEndArray();
+			this.json.writeEndObject();
+			this.json.writeRaw('\n');
+		}
+
+	}
+
+	private static final class CsvHandler extends RowHandler {
+
+		private static final int COLUMNS = 13;
+
+		private final Writer writer;
+
+		CsvHandler(Writer writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		void writeRow(ResultSet row) throws SQLException, IOException {
+			for (int column = 1; column <= COLUMNS; column++) {
+				if (column > 1) {
+					this.writer.write(',');
+				}
+				String value = (column == 9 || column == 12) ? date(row, column) : row.getString(column);
+				if (value != null) {
+					CsvParser.writeField(this.writer, value);
+				}
+			}
+			this.writer.write("\r\n");
+		}
+
+	}
+
+}
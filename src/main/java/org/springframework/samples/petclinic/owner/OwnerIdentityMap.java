@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+/**
+ * Request-scoped identity map in front of {@link OwnerRepository#findById(Integer)}.
+ * <p>
+ * A single request often needs the same owner in several places: a
+ * <code>@ModelAttribute</code> method, the handler method and the pet or visit being
+ * edited. Going through this map loads each owner aggregate (with its pets and visits) at
+ * most once per request, and every caller gets the same instance, so a pet taken from the
+ * owner is the very object that is saved with it.
+ */
+@Component
+@RequestScope
+public class OwnerIdentityMap {
+
+	private final OwnerRepository owners;
+
+	// also remembers owners that were not found, as null values
+	private final Map<Integer, Owner> loaded = new HashMap<>();
+
+	public OwnerIdentityMap(OwnerRepository owners) {
+		this.owners = owners;
+	}
+
+	/**
+	 * Retrieve an {@link Owner}, loading it from the repository only the first time it is
+	 * asked for in the current request.
+	 * @param id the id to search for
+	 * @return the {@link Owner} if found, {@literal null} otherwise
+	 */
+	public Owner findById(Integer id) {
+		Owner owner = this.loaded.get(id);
+		if (owner == null && !this.loaded.containsKey(id)) {
+			owner = this.owners.findById(id);
+			this.loaded.put(id, owner);
+		}
+		return owner;
+	}
+
+}
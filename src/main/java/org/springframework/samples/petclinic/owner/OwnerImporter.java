@@ -0,0 +1,417 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.model.NamedEntities;
+import org.springframework.samples.petclinic.system.ReferenceData;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+
+/**
+ * Streams {@link Owner}s and their {@link Pet}s from CSV into the data store, e.g. when
+ * onboarding a clinic.
+ * <p>
+ * Every line is one pet:
+ * <code>firstName,lastName,address,city,telephone,petName,petBirthDate,petType</code>,
+ * with an optional header line. Consecutive lines with the same owner columns are pets of
+ * the same owner; an owner without pets has empty pet columns.
+ * <p>
+ * The calling thread parses and validates, using the Bean Validation constraints of
+ * {@link Owner} and {@link Pet} plus the {@link PetValidator}; pet types are resolved by
+ * name against the {@link ReferenceData} snapshot taken when the import starts. Valid
+ * owners are grouped into chunks that a small pool of writers saves in parallel, each
+ * chunk in its own transaction with one JDBC batch for the owners and one for their pets.
+ * No persistence context is involved, so there is none to flush or clear. When the
+ * writers fall behind, the calling thread writes the next chunk itself, which bounds the
+ * number of chunks held in memory. Once a chunk has committed, its owners are added to
+ * the {@link OwnerNameIndex} and {@link OwnerTrigramIndex} and evicted from the owners
+ * cache, which may hold them as not found.
+ * <p>
+ * Progress and throughput are published as <code>petclinic.import.*</code> metrics.
+ */
+@Component
+public class OwnerImporter {
+
+	private static final String INSERT_OWNER = "INSERT INTO owners (first_name, last_name, address, city, telephone) "
+			+ "VALUES (?, ?, ?, ?, ?)";
+
+	private static final String INSERT_PET = "INSERT INTO pets (name, birth_date, type_id, owner_id) VALUES (?, ?, ?, ?)";
+
+	private static final int FIELDS = 8;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final Validator validator;
+
+	private final PetValidator petValidator = new PetValidator();
+
+	private final ReferenceData referenceData;
+
+	private final OwnerNameIndex ownerNames;
+
+	private final OwnerTrigramIndex similarNames;
+
+	private final OwnerCacheEvictions ownerEvictions;
+
+	private final int chunkSize;
+
+	private final int threads;
+
+	private final Counter linesRead;
+
+	private final Counter ownersImported;
+
+	private final Counter ownersFailed;
+
+	private final Counter petsImported;
+
+	private final Timer chunkWrites;
+
+	private final AtomicInteger pendingChunks = new AtomicInteger();
+
+	public OwnerImporter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, Validator validator,
+			ReferenceData referenceData, OwnerNameIndex ownerNames, OwnerTrigramIndex similarNames,
+			ObjectProvider<CacheManager> cacheManager, MeterRegistry registry,
+			@Value("${petclinic.owners.import.chunk-size:500}") int chunkSize,
+			@Value("${petclinic.owners.import.threads:4}") int threads) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.validator = validator;
+		this.referenceData = referenceData;
+		this.ownerNames = ownerNames;
+		this.similarNames = similarNames;
+		this.ownerEvictions = new OwnerCacheEvictions(cacheManager);
+		this.chunkSize = chunkSize;
+		this.threads = threads;
+		this.linesRead = Counter.builder("petclinic.import.lines").description("CSV lines read by owner imports")
+				.register(registry);
+		this.ownersImported = Counter.builder("petclinic.import.owners").tag("result", "imported")
+				.description("Owners processed by owner imports").register(registry);
+		this.ownersFailed = Counter.builder("petclinic.import.owners").tag("result", "failed")
+				.description("Owners processed by owner imports").register(registry);
+		this.petsImported = Counter.builder("petclinic.import.pets").description("Pets saved by owner imports")
+				.register(registry);
+		this.chunkWrites = Timer.builder("petclinic.import.chunks").description("Writes of owner import chunks")
+				.register(registry);
+		Gauge.builder("petclinic.import.chunks.pending", this.pendingChunks, AtomicInteger::get)
+				.description("Owner import chunks waiting to be written").register(registry);
+	}
+
+	/**
+	 * Import owners and their pets given as CSV.
+	 * @param input the CSV lines
+	 * @return the outcome of the import, counting owners
+	 */
+	public ImportResult importCsv(Reader input) throws IOException {
+		long start = System.nanoTime();
+		ImportResult result = new ImportResult();
+		NamedEntities<PetType> petTypes = this.referenceData.getPetTypes();
+		ThreadPoolExecutor writers = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(this.threads), new CustomizableThreadFactory("owner-import-"),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		try {
+			BufferedReader reader = new BufferedReader(input);
+			List<ParsedOwner> chunk = new ArrayList<>(this.chunkSize);
+			ParsedOwner current = null;
+			long lineNumber = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				this.linesRead.increment();
+				if (!StringUtils.hasText(line) || (lineNumber == 1 && isHeader(line))) {
+					continue;
+				}
+				List<String> fields;
+				try {
+					fields = CsvParser.parseLine(line);
+					if (fields.size() != FIELDS) {
+						throw new IllegalArgumentException("Expected " + FIELDS + " fields but found " + fields.size());
+					}
+				}
+				catch (IllegalArgumentException ex) {
+					result.addError(lineNumber, ex.getMessage());
+					this.ownersFailed.increment();
+					continue;
+				}
+				String key = String.join("\u0000", fields.subList(0, 5));
+				if (current == null || !current.key.equals(key)) {
+					if (current != null && accept(current, result)) {
+						chunk = addToChunk(chunk, current, writers, result);
+					}
+					current = new ParsedOwner(lineNumber, key, owner(fields));
+				}
+				addPet(current, lineNumber, fields, petTypes);
+			}
+			if (current != null && accept(current, result)) {
+				chunk = addToChunk(chunk, current, writers, result);
+			}
+			if (!chunk.isEmpty()) {
+				submit(chunk, writers, result);
+			}
+		}
+		finally {
+			writers.shutdown();
+			awaitTermination(writers);
+		}
+		result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+		return result;
+	}
+
+	private List<ParsedOwner> addToChunk(List<ParsedOwner> chunk, ParsedOwner owner, ThreadPoolExecutor writers,
+			ImportResult result) {
+		chunk.add(owner);
+		if (chunk.size() < this.chunkSize) {
+			return chunk;
+		}
+		submit(chunk, writers, result);
+		return new ArrayList<>(this.chunkSize);
+	}
+
+	private void submit(List<ParsedOwner> chunk, ThreadPoolExecutor writers, ImportResult result) {
+		this.pendingChunks.incrementAndGet();
+		writers.execute(() -> {
+			try {
+				this.chunkWrites.record(() -> write(chunk, result));
+			}
+			finally {
+				this.pendingChunks.decrementAndGet();
+			}
+		});
+	}
+
+	private void write(List<ParsedOwner> chunk, ImportResult result) {
+		try {
+			this.transactionTemplate.executeWithoutResult(status -> this.jdbcTemplate
+					.execute((ConnectionCallback<Void>) connection -> insert(connection, chunk)));
+		}
+		catch (RuntimeException ex) {
+			String message = "Not saved: " + NestedExceptionUtils.getMostSpecificCause(ex).getMessage();
+			for (ParsedOwner owner : chunk) {
+				result.addError(owner.line, message);
+			}
+			this.ownersFailed.increment(chunk.size());
+			return;
+		}
+		addToIndexes(chunk);
+		result.addImported(chunk.size());
+		this.ownersImported.increment(chunk.size());
+		this.petsImported.increment(chunk.stream().mapToInt(owner -> owner.owner.getPets().size()).sum());
+	}
+
+	private void addToIndexes(List<ParsedOwner> chunk) {
+		Map<Integer, String> lastNames = new HashMap<>();
+		for (ParsedOwner parsed : chunk) {
+			Owner owner = parsed.owner;
+			lastNames.put(owner.getId(), owner.getLastName());
+			this.similarNames.update(owner.getId(), owner.getFirstName(), owner.getLastName());
+		}
+		this.ownerNames.updateAll(lastNames);
+		this.ownerEvictions.evictAfterCommit(lastNames.keySet());
+	}
+
+	private Void insert(Connection connection, List<ParsedOwner> chunk) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(INSERT_OWNER, new String[] { "id" })) {
+			for (ParsedOwner parsed : chunk) {
+				Owner owner = parsed.owner;
+				statement.setString(1, owner.getFirstName());
+				statement.setString(2, owner.getLastName());
+				statement.setString(3, owner.getAddress());
+				statement.setString(4, owner.getCity());
+				statement.setString(5, owner.getTelephone());
+				statement.addBatch();
+			}
+			statement.executeBatch();
+			try (ResultSet keys = statement.getGeneratedKeys()) {
+				for (ParsedOwner parsed : chunk) {
+					if (!keys.next()) {
+						throw new SQLException("Missing generated key for owner on line " + parsed.line);
+					}
+					parsed.owner.setId(keys.getInt(1));
+				}
+			}
+		}
+		try (PreparedStatement statement = connection.prepareStatement(INSERT_PET)) {
+			for (ParsedOwner parsed : chunk) {
+				for (Pet pet : parsed.owner.getPets()) {
+					statement.setString(1, pet.getName());
+					statement.setDate(2, Date.valueOf(pet.getBirthDate()));
+					statement.setInt(3, pet.getType().getId());
+					statement.setInt(4, parsed.owner.getId());
+					statement.addBatch();
+				}
+			}
+			statement.executeBatch();
+		}
+		return null;
+	}
+
+	/**
+	 * Check a completely parsed owner, reporting it if it is rejected.
+	 */
+	private boolean accept(ParsedOwner parsed, ImportResult result) {
+		if (parsed.error == null) {
+			Set<ConstraintViolation<Owner>> violations = this.validator.validate(parsed.owner);
+			if (!violations.isEmpty()) {
+				parsed.reject(parsed.line,
+						violations.stream().map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+								.sorted().collect(Collectors.joining(", ")));
+			}
+		}
+		if (parsed.error != null) {
+			result.addError(parsed.errorLine, parsed.error);
+			this.ownersFailed.increment();
+			return false;
+		}
+		return true;
+	}
+
+	private void addPet(ParsedOwner parsed, long line, List<String> fields, NamedEntities<PetType> petTypes) {
+		if (parsed.error != null || fields.subList(5, FIELDS).stream().noneMatch(StringUtils::hasText)) {
+			return;
+		}
+		Pet pet = new Pet();
+		pet.setName(fields.get(5).trim());
+		String typeName = fields.get(7).trim();
+		if (StringUtils.hasText(typeName)) {
+			pet.setType(petTypes.findByName(typeName));
+			if (pet.getType() == null) {
+				parsed.reject(line, "petType '" + typeName + "' does not exist");
+				return;
+			}
+		}
+		try {
+			if (StringUtils.hasText(fields.get(6))) {
+				pet.setBirthDate(LocalDate.parse(fields.get(6).trim()));
+			}
+		}
+		catch (DateTimeParseException ex) {
+			parsed.reject(line, ex.getMessage());
+			return;
+		}
+		Errors errors = new BeanPropertyBindingResult(pet, "pet");
+		this.petValidator.validate(pet, errors);
+		List<String> messages = errors.getFieldErrors().stream()
+				.map(error -> error.getField() + " " + error.getDefaultMessage()).collect(Collectors.toList());
+		this.validator.validate(pet)
+				.forEach(violation -> messages.add(violation.getPropertyPath() + " " + violation.getMessage()));
+		if (!messages.isEmpty()) {
+			parsed.reject(line, "pet " + String.join(", ", messages));
+			return;
+		}
+		parsed.owner.addPet(pet);
+	}
+
+	private static Owner owner(List<String> fields) {
+		Owner owner = new Owner();
+		owner.setFirstName(fields.get(0).trim());
+		owner.setLastName(fields.get(1).trim());
+		owner.setAddress(fields.get(2).trim());
+		owner.setCity(fields.get(3).trim());
+		owner.setTelephone(fields.get(4).trim());
+		return owner;
+	}
+
+	private static boolean isHeader(String line) {
+		String start = line.replace("\"", "").trim().toLowerCase(Locale.ROOT);
+		return start.startsWith("firstname") || start.startsWith("first_name");
+	}
+
+	private static void awaitTermination(ThreadPoolExecutor writers) throws IOException {
+		try {
+			while (!writers.awaitTermination(1, TimeUnit.MINUTES)) {
+				// keep waiting, the writers finish the chunks they have been given
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the owner import to finish", ex);
+		}
+	}
+
+	/**
+	 * An owner assembled from one or more consecutive lines, with the first problem found
+	 * on any of them.
+	 */
+	private static final class ParsedOwner {
+
+		private final long line;
+
+		private final String key;
+
+		private final Owner owner;
+
+		private long errorLine;
+
+		private String error;
+
+		ParsedOwner(long line, String key, Owner owner) {
+			this.line = line;
+			this.key = key;
+			this.owner = owner;
+		}
+
+		void reject(long line, String error) {
+			if (this.error == null) {
+				this.errorLine = line;
+				this.error = error;
+			}
+		}
+
+	}
+
+}
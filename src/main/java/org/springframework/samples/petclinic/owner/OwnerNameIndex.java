@@ -0,0 +1,198 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory, case-insensitive prefix index over the distinct last names of all
+ * {@link Owner}s, used for autocompletion without touching the database.
+ * <p>
+ * Lookups binary search a sorted array of lower-cased names and walk forward while the
+ * prefix matches. The arrays are replaced copy-on-write, so readers never lock; writers
+ * are serialized and only pay for an array copy when a last name appears or disappears,
+ * once for a whole batch of updates.
+ */
+@Component
+public class OwnerNameIndex {
+
+	private final OwnerRepository owners;
+
+	// lower-cased last name of every indexed owner, needed to retract renamed owners
+	private final Map<Integer, String> keysByOwner = new HashMap<>();
+
+	private final Map<String, Integer> ownerCounts = new HashMap<>();
+
+	private volatile Names names = new Names(new String[0], new String[0]);
+
+	public OwnerNameIndex(OwnerRepository owners) {
+		this.owners = owners;
+	}
+
+	/**
+	 * (Re)build the index from all owners in the data store.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public synchronized void rebuild() {
+		this.keysByOwner.clear();
+		this.ownerCounts.clear();
+		TreeMap<String, String> sorted = new TreeMap<>();
+		for (OwnerName owner : this.owners.findAllNames()) {
+			if (owner.getLastName() != null) {
+				String key = key(owner.getLastName());
+				this.keysByOwner.put(owner.getId(), key);
+				this.ownerCounts.merge(key, 1, Integer::sum);
+				sorted.putIfAbsent(key, owner.getLastName());
+			}
+		}
+		this.names = new Names(sorted.keySet().toArray(new String[0]), sorted.values().toArray(new String[0]));
+	}
+
+	/**
+	 * Record the current last name of a created or updated owner.
+	 * @param ownerId the id of the saved owner, must not be {@literal null}
+	 * @param lastName the owner's last name as saved
+	 */
+	public void update(Integer ownerId, String lastName) {
+		updateAll(Collections.singletonMap(ownerId, lastName));
+	}
+
+	/**
+	 * Record the current last names of several created or updated owners, e.g. after an
+	 * import, copying the name arrays at most once.
+	 * @param lastNames the owners' last names as saved, by owner id
+	 */
+	public synchronized void updateAll(Map<Integer, String> lastNames) {
+		SortedMap<String, String> added = new TreeMap<>();
+		Set<String> removed = new HashSet<>();
+		lastNames.forEach((ownerId, lastName) -> {
+			String key = (lastName != null) ? key(lastName) : null;
+			String previous = (key != null) ? this.keysByOwner.put(ownerId, key) : this.keysByOwner.remove(ownerId);
+			if (Objects.equals(previous, key)) {
+				return;
+			}
+			if (previous != null && this.ownerCounts.merge(previous, -1, OwnerNameIndex::sumOrRemove) == null) {
+				added.remove(previous);
+				removed.add(previous);
+			}
+			if (key != null && this.ownerCounts.merge(key, 1, Integer::sum) == 1) {
+				added.put(key, lastName);
+			}
+		});
+		if (!added.isEmpty() || !removed.isEmpty()) {
+			this.names = this.names.merge(added, removed);
+		}
+	}
+
+	/**
+	 * Return the distinct last names starting with the given prefix, ignoring case.
+	 * @param prefix the typed prefix, an empty prefix matches every name
+	 * @param limit the maximum number of names to return
+	 * @return up to {@code limit} last names in alphabetical order
+	 */
+	public List<String> complete(String prefix, int limit) {
+		if (limit <= 0) {
+			return new ArrayList<>();
+		}
+		return this.names.complete(key(prefix), limit);
+	}
+
+	private static String key(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	private static Integer sumOrRemove(Integer count, Integer delta) {
+		int sum = count + delta;
+		return (sum > 0) ? sum : null;
+	}
+
+	/**
+	 * Immutable sorted name arrays; {@code keys[i]} is the lower-cased form of
+	 * {@code values[i]}.
+	 */
+	private static final class Names {
+
+		private final String[] keys;
+
+		private final String[] values;
+
+		Names(String[] keys, String[] values) {
+			this.keys = keys;
+			this.values = values;
+		}
+
+		List<String> complete(String prefix, int limit) {
+			int from = Arrays.binarySearch(this.keys, prefix);
+			if (from < 0) {
+				from = -from - 1;
+			}
+			List<String> matches = new ArrayList<>(Math.min(limit, this.keys.length - from));
+			for (int i = from; i < this.keys.length && matches.size() < limit; i++) {
+				if (!this.keys[i].startsWith(prefix)) {
+					break;
+				}
+				matches.add(this.values[i]);
+			}
+			return matches;
+		}
+
+		/**
+		 * Return a copy without the removed keys and with the added entries, which
+		 * replace existing entries with the same key.
+		 */
+		Names merge(SortedMap<String, String> added, Set<String> removed) {
+			List<String> keys = new ArrayList<>(this.keys.length + added.size());
+			List<String> values = new ArrayList<>(this.keys.length + added.size());
+			Iterator<Map.Entry<String, String>> additions = added.entrySet().iterator();
+			Map.Entry<String, String> next = additions.hasNext() ? additions.next() : null;
+			for (int i = 0; i < this.keys.length; i++) {
+				while (next != null && next.getKey().compareTo(this.keys[i]) < 0) {
+					keys.add(next.getKey());
+					values.add(next.getValue());
+					next = additions.hasNext() ? additions.next() : null;
+				}
+				if (!removed.contains(this.keys[i]) && !added.containsKey(this.keys[i])) {
+					keys.add(this.keys[i]);
+					values.add(this.values[i]);
+				}
+			}
+			while (next != null) {
+				keys.add(next.getKey());
+				values.add(next.getValue());
+				next = additions.hasNext() ? additions.next() : null;
+			}
+			return new Names(keys.toArray(new String[0]), values.toArray(new String[0]));
+		}
+
+	}
+
+}
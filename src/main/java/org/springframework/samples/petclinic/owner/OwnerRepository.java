@@ -15,10 +15,14 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.repository.query.Param;
@@ -53,24 +57,128 @@ public interface OwnerRepository extends Repository<Owner, Integer> {
 	 * found)
 	 */
 
-	@Query("SELECT DISTINCT owner FROM Owner owner left join  owner.pets WHERE owner.lastName LIKE :lastName% ")
+	@Query("SELECT DISTINCT owner FROM Owner owner left join  owner.pets WHERE owner.lastName LIKE :lastName% "
+			+ "ORDER BY owner.lastName, owner.id")
 	@Transactional(readOnly = true)
 	Page<Owner> findByLastName(@Param("lastName") String lastName, Pageable pageable);
 
 	/**
-	 * Retrieve an {@link Owner} from the data store by id.
+	 * Retrieve {@link OwnerSummary summaries} of the {@link Owner}s whose last name
+	 * <i>starts</i> with the given name, ordered by <code>(lastName, id)</code>. Only the
+	 * owner columns are read, pet names are filled in by {@link #findPetNames}.
+	 * @param lastName Value to search for
+	 * @param pageable the page to read
+	 * @return a page of matching {@link OwnerSummary}s without pet names
+	 */
+	@Query(value = "SELECT new org.springframework.samples.petclinic.owner.OwnerSummary(owner.id, owner.firstName, "
+			+ "owner.lastName, owner.address, owner.city, owner.telephone) FROM Owner owner "
+			+ "WHERE owner.lastName LIKE :lastName% ORDER BY owner.lastName, owner.id",
+			countQuery = "SELECT count(owner) FROM Owner owner WHERE owner.lastName LIKE :lastName%")
+	@Transactional(readOnly = true)
+	Page<OwnerSummary> findSummariesByLastName(@Param("lastName") String lastName, Pageable pageable);
+
+	/**
+	 * Retrieve {@link OwnerSummary summaries} of the {@link Owner}s whose last name
+	 * <i>starts</i> with the given name and that sort after the given
+	 * <code>(lastName, id)</code> position. This is the keyset counterpart of
+	 * {@link #findSummariesByLastName(String, Pageable)}: it seeks directly to the
+	 * position instead of skipping rows and does not issue a count query.
+	 * @param lastName Value to search for
+	 * @param afterLastName last name of the last owner already seen
+	 * @param afterId id of the last owner already seen
+	 * @param pageable the slice size, the offset must be {@literal 0}
+	 * @return the next slice of matching {@link OwnerSummary}s in
+	 * <code>(lastName, id)</code> order
+	 */
+	@Query("SELECT new org.springframework.samples.petclinic.owner.OwnerSummary(owner.id, owner.firstName, "
+			+ "owner.lastName, owner.address, owner.city, owner.telephone) FROM Owner owner "
+			+ "WHERE owner.lastName LIKE :lastName% AND (owner.lastName > :afterLastName "
+			+ "OR (owner.lastName = :afterLastName AND owner.id > :afterId)) ORDER BY owner.lastName, owner.id")
+	@Transactional(readOnly = true)
+	Slice<OwnerSummary> findSummariesByLastNameAfter(@Param("lastName") String lastName,
+			@Param("afterLastName") String afterLastName, @Param("afterId") Integer afterId, Pageable pageable);
+
+	/**
+	 * Retrieve {@link OwnerSummary summaries} of the {@link Owner}s whose last name
+	 * <i>starts</i> with the given name and that sort before the given
+	 * <code>(lastName, id)</code> position, closest first.
+	 * @param lastName Value to search for
+	 * @param beforeLastName last name of the first owner already seen
+	 * @param beforeId id of the first owner already seen
+	 * @param pageable the slice size, the offset must be {@literal 0}
+	 * @return the previous slice of matching {@link OwnerSummary}s in <i>descending</i>
+	 * <code>(lastName, id)</code> order
+	 */
+	@Query("SELECT new org.springframework.samples.petclinic.owner.OwnerSummary(owner.id, owner.firstName, "
+			+ "owner.lastName, owner.address, owner.city, owner.telephone) FROM Owner owner "
+			+ "WHERE owner.lastName LIKE :lastName% AND (owner.lastName < :beforeLastName "
+			+ "OR (owner.lastName = :beforeLastName AND owner.id < :beforeId)) "
+			+ "ORDER BY owner.lastName DESC, owner.id DESC")
+	@Transactional(readOnly = true)
+	Slice<OwnerSummary> findSummariesByLastNameBefore(@Param("lastName") String lastName,
+			@Param("beforeLastName") String beforeLastName, @Param("beforeId") Integer beforeId, Pageable pageable);
+
+	/**
+	 * Retrieve {@link OwnerSummary summaries} of the given {@link Owner}s.
+	 * @param ownerIds the owners to look up
+	 * @return the summaries without pet names, in no particular order
+	 */
+	@Query("SELECT new org.springframework.samples.petclinic.owner.OwnerSummary(owner.id, owner.firstName, "
+			+ "owner.lastName, owner.address, owner.city, owner.telephone) FROM Owner owner "
+			+ "WHERE owner.id IN :ownerIds")
+	@Transactional(readOnly = true)
+	List<OwnerSummary> findSummariesByIds(@Param("ownerIds") Collection<Integer> ownerIds);
+
+	/**
+	 * Retrieve the names of the pets of the given owners in a single query, without
+	 * loading the pets themselves.
+	 * @param ownerIds the owners to look up
+	 * @return the pet names with their owner id, ordered by name
+	 */
+	@Query("SELECT owner.id AS ownerId, pet.name AS name FROM Owner owner JOIN owner.pets pet "
+			+ "WHERE owner.id IN :ownerIds ORDER BY pet.name")
+	@Transactional(readOnly = true)
+	List<OwnerSummary.PetName> findPetNames(@Param("ownerIds") Collection<Integer> ownerIds);
+
+	/**
+	 * Retrieve the names of all {@link Owner}s, for building in-memory indexes.
+	 * @return the id, first and last name of every owner
+	 */
+	@Query("SELECT owner.id AS id, owner.firstName AS firstName, owner.lastName AS lastName FROM Owner owner")
+	@Transactional(readOnly = true)
+	List<OwnerName> findAllNames();
+
+	/**
+	 * Retrieve an {@link Owner} from the data store by id. Owners are cached with their
+	 * pets and visits; ids that do not exist are cached briefly as well. Concurrent
+	 * misses of the same id share a single query.
 	 * @param id the id to search for
 	 * @return the {@link Owner} if found
 	 */
 	@Query("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id")
 	@Transactional(readOnly = true)
+	@Cacheable(cacheNames = "owners", sync = true)
 	Owner findById(@Param("id") Integer id);
 
 	/**
-	 * Save an {@link Owner} to the data store, either inserting or updating it.
+	 * Load an {@link Owner} with its pets and visits, bypassing the caches. Used to
+	 * (re)load cache entries.
+	 * @param id the id to search for
+	 * @return the {@link Owner} if found
+	 */
+	@Query("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id")
+	@Transactional(readOnly = true)
+	Owner loadById(@Param("id") Integer id);
+
+	/**
+	 * Save an {@link Owner} to the data store, either inserting or updating it. The saved
+	 * aggregate is written through to the owners cache.
 	 * @param owner the {@link Owner} to save
+	 * @return the saved {@link Owner}, which may be a different instance if the given one
+	 * was detached
 	 */
-	void save(Owner owner);
+	@CachePut(cacheNames = "owners", key = "#result.id")
+	Owner save(Owner owner);
 
 	/**
 	 * Returnes all the owners from data store
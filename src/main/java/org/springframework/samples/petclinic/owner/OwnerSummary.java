@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.core.style.ToStringCreator;
+
+/**
+ * Read-only view of an {@link Owner} for the owners list: the contact details plus the
+ * names of the owner's pets. Unlike {@link Owner} it is not a managed entity, so reading
+ * it never loads the pets or visits graph.
+ */
+public class OwnerSummary {
+
+	private final Integer id;
+
+	private final String firstName;
+
+	private final String lastName;
+
+	private final String address;
+
+	private final String city;
+
+	private final String telephone;
+
+	private final List<String> petNames = new ArrayList<>();
+
+	public OwnerSummary(Integer id, String firstName, String lastName, String address, String city, String telephone) {
+		this.id = id;
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.address = address;
+		this.city = city;
+		this.telephone = telephone;
+	}
+
+	public Integer getId() {
+		return this.id;
+	}
+
+	public String getFirstName() {
+		return this.firstName;
+	}
+
+	public String getLastName() {
+		return this.lastName;
+	}
+
+	public String getAddress() {
+		return this.address;
+	}
+
+	public String getCity() {
+		return this.city;
+	}
+
+	public String getTelephone() {
+		return this.telephone;
+	}
+
+	public List<String> getPetNames() {
+		return Collections.unmodifiableList(this.petNames);
+	}
+
+	void addPetName(String petName) {
+		this.petNames.add(petName);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringCreator(this).append("id", this.id).append("lastName", this.lastName)
+				.append("firstName", this.firstName).append("petNames", this.petNames).toString();
+	}
+
+	/**
+	 * Projection of a single pet name together with the id of its owner.
+	 */
+	public interface PetName {
+
+		Integer getOwnerId();
+
+		String getName();
+
+	}
+
+}
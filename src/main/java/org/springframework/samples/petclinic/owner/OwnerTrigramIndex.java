@@ -0,0 +1,398 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory trigram index over the first and last names of all {@link Owner}s, used for
+ * typo-tolerant owner search.
+ * <p>
+ * Every name is padded (two leading blanks, one trailing) and split into its distinct
+ * three-character sequences, as in PostgreSQL's <code>pg_trgm</code>. Names sharing
+ * enough trigrams with the query are candidates; they are then verified and ranked by
+ * their edit distance to the query (counting a swap of adjacent letters as one edit), so
+ * "Davsi" finds "Davis" first. Postings are kept per name (a "document" is
+ * <code>ownerId * 2 + field</code>); the trigrams each document shares with the query are
+ * counted in a hash table sized to the postings of the query, so a search uses memory in
+ * proportion to the names it touches rather than to the whole index.
+ */
+@Component
+public class OwnerTrigramIndex {
+
+	/**
+	 * Minimum Jaccard similarity of the trigram sets for a name to be a candidate. Lower
+	 * than the <code>pg_trgm</code> default because a single transposition already breaks
+	 * three trigrams.
+	 */
+	static final double MIN_SIMILARITY = 0.2;
+
+	private static final int LAST_NAME = 0;
+
+	private static final int FIRST_NAME = 1;
+
+	private static final long[] NO_TRIGRAMS = new long[0];
+
+	private final OwnerRepository owners;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<Long, Postings> postings = new HashMap<>();
+
+	// indexed by document, the normalized name and its number of distinct trigrams
+	private String[] names = new String[0];
+
+	private int[] trigramCounts = new int[0];
+
+	public OwnerTrigramIndex(OwnerRepository owners) {
+		this.owners = owners;
+	}
+
+	/**
+	 * (Re)build the index from all owners in the data store.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuild() {
+		List<OwnerName> all = this.owners.findAllNames();
+		this.lock.writeLock().lock();
+		try {
+			this.postings.clear();
+			this.names = new String[0];
+			this.trigramCounts = new int[0];
+			for (OwnerName owner : all) {
+				index(owner.getId(), owner.getFirstName(), owner.getLastName());
+			}
+		}
+		finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Record the current names of a created or updated owner.
+	 * @param ownerId the id of the saved owner, must not be {@literal null}
+	 * @param firstName the owner's first name as saved
+	 * @param lastName the owner's last name as saved
+	 */
+	public void update(Integer ownerId, String firstName, String lastName) {
+		this.lock.writeLock().lock();
+		try {
+			retract(document(ownerId, LAST_NAME));
+			retract(document(ownerId, FIRST_NAME));
+			index(ownerId, firstName, lastName);
+		}
+		finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Find the owners whose first or last name is most similar to the given name.
+	 * @param name the possibly misspelled name to search for
+	 * @param limit the maximum number of owners to return
+	 * @return ids of the matching owners, most similar first
+	 */
+	public List<Integer> search(String name, int limit) {
+		String normalized = (name != null) ? normalize(name) : "";
+		long[] query = trigrams(normalized);
+		if (query.length == 0 || limit <= 0) {
+			return Collections.emptyList();
+		}
+		int maxDistance = maxDistance(normalized);
+		Map<Integer, Match> matches = new HashMap<>();
+		this.lock.readLock().lock();
+		try {
+			SharedTrigramCounts counts = count(query);
+			for (int slot = 0; slot < counts.capacity(); slot++) {
+				int document = counts.documents[slot];
+				if (document == SharedTrigramCounts.EMPTY) {
+					continue;
+				}
+				int shared = counts.shared[slot];
+				double similarity = (double) shared / (query.length + this.trigramCounts[document] - shared);
+				if (similarity >= MIN_SIMILARITY) {
+					int distance = distance(normalized, this.names[document]);
+					if (distance <= maxDistance) {
+						matches.merge(document >>> 1, new Match(document >>> 1, distance, similarity), Match::better);
+					}
+				}
+			}
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+		List<Match> ranked = new ArrayList<>(matches.values());
+		Collections.sort(ranked);
+		List<Integer> ownerIds = new ArrayList<>(Math.min(limit, ranked.size()));
+		for (int i = 0; i < ranked.size() && i < limit; i++) {
+			ownerIds.add(ranked.get(i).ownerId);
+		}
+		return ownerIds;
+	}
+
+	/**
+	 * Count the trigrams each document shares with the query; the caller holds the read
+	 * lock.
+	 */
+	SharedTrigramCounts count(long[] query) {
+		Postings[] lists = new Postings[query.length];
+		int total = 0;
+		for (int i = 0; i < query.length; i++) {
+			lists[i] = this.postings.get(query[i]);
+			if (lists[i] != null) {
+				total += lists[i].size;
+			}
+		}
+		SharedTrigramCounts counts = new SharedTrigramCounts(total);
+		for (Postings list : lists) {
+			if (list != null) {
+				for (int i = 0; i < list.size; i++) {
+					counts.increment(list.documents[i]);
+				}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Number of edits tolerated for a query: one for short names, up to three for long
+	 * ones.
+	 */
+	private static int maxDistance(String query) {
+		return (query.length() <= 4) ? 1 : (query.length() <= 8) ? 2 : 3;
+	}
+
+	/**
+	 * Optimal string alignment distance: insertions, deletions, substitutions and
+	 * transpositions of adjacent characters each count as one edit.
+	 */
+	static int distance(String source, String target) {
+		int[] previous2 = new int[target.length() + 1];
+		int[] previous = new int[target.length() + 1];
+		int[] current = new int[target.length() + 1];
+		for (int j = 0; j <= target.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= source.length(); i++) {
+			current[0] = i;
+			for (int j = 1; j <= target.length(); j++) {
+				int cost = (source.charAt(i - 1) == target.charAt(j - 1)) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+				if (i > 1 && j > 1 && source.charAt(i - 1) == target.charAt(j - 2)
+						&& source.charAt(i - 2) == target.charAt(j - 1)) {
+					current[j] = Math.min(current[j], previous2[j - 2] + 1);
+				}
+			}
+			int[] recycled = previous2;
+			previous2 = previous;
+			previous = current;
+			current = recycled;
+		}
+		return previous[target.length()];
+	}
+
+	private void index(Integer ownerId, String firstName, String lastName) {
+		add(document(ownerId, LAST_NAME), lastName);
+		add(document(ownerId, FIRST_NAME), firstName);
+	}
+
+	private void add(int document, String name) {
+		if (name == null) {
+			return;
+		}
+		String normalized = normalize(name);
+		long[] trigrams = trigrams(normalized);
+		if (document >= this.names.length) {
+			int capacity = Math.max(document + 1, this.names.length + (this.names.length >> 1));
+			this.names = Arrays.copyOf(this.names, capacity);
+			this.trigramCounts = Arrays.copyOf(this.trigramCounts, capacity);
+		}
+		this.names[document] = normalized;
+		this.trigramCounts[document] = trigrams.length;
+		for (long trigram : trigrams) {
+			this.postings.computeIfAbsent(trigram, key -> new Postings()).add(document);
+		}
+	}
+
+	private void retract(int document) {
+		if (document >= this.names.length || this.names[document] == null) {
+			return;
+		}
+		for (long trigram : trigrams(this.names[document])) {
+			Postings list = this.postings.get(trigram);
+			list.remove(document);
+			if (list.size == 0) {
+				this.postings.remove(trigram);
+			}
+		}
+		this.names[document] = null;
+		this.trigramCounts[document] = 0;
+	}
+
+	private static int document(Integer ownerId, int field) {
+		return (ownerId << 1) | field;
+	}
+
+	private static String normalize(String name) {
+		return name.trim().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Return the distinct trigrams of the given normalized name, each packed into a
+	 * {@code long}.
+	 */
+	static long[] trigrams(String name) {
+		if (name.isEmpty()) {
+			return NO_TRIGRAMS;
+		}
+		String padded = "  " + name + " ";
+		long[] trigrams = new long[padded.length() - 2];
+		for (int i = 0; i < trigrams.length; i++) {
+			trigrams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+		}
+		Arrays.sort(trigrams);
+		int distinct = 1;
+		for (int i = 1; i < trigrams.length; i++) {
+			if (trigrams[i] != trigrams[distinct - 1]) {
+				trigrams[distinct++] = trigrams[i];
+			}
+		}
+		return (distinct == trigrams.length) ? trigrams : Arrays.copyOf(trigrams, distinct);
+	}
+
+	/**
+	 * Best match of one owner, ordered by edit distance, then similarity, then id.
+	 */
+	private static final class Match implements Comparable<Match> {
+
+		private final int ownerId;
+
+		private final int distance;
+
+		private final double similarity;
+
+		Match(int ownerId, int distance, double similarity) {
+			this.ownerId = ownerId;
+			this.distance = distance;
+			this.similarity = similarity;
+		}
+
+		Match better(Match other) {
+			return (compareTo(other) <= 0) ? this : other;
+		}
+
+		@Override
+		public int compareTo(Match other) {
+			if (this.distance != other.distance) {
+				return Integer.compare(this.distance, other.distance);
+			}
+			if (this.similarity != other.similarity) {
+				return Double.compare(other.similarity, this.similarity);
+			}
+			return Integer.compare(this.ownerId, other.ownerId);
+		}
+
+	}
+
+	/**
+	 * Growable list of the documents containing one trigram.
+	 */
+	private static final class Postings {
+
+		private int[] documents = new int[4];
+
+		private int size;
+
+		void add(int document) {
+			if (this.size == this.documents.length) {
+				this.documents = Arrays.copyOf(this.documents, this.size << 1);
+			}
+			this.documents[this.size++] = document;
+		}
+
+		void remove(int document) {
+			for (int i = 0; i < this.size; i++) {
+				if (this.documents[i] == document) {
+					System.arraycopy(this.documents, i + 1, this.documents, i, this.size - i - 1);
+					this.size--;
+					return;
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Open-addressing table from document to the number of trigrams it shares with a
+	 * query, sized for the given number of postings so that it is at most half full.
+	 */
+	static final class SharedTrigramCounts {
+
+		static final int EMPTY = -1;
+
+		private final int[] documents;
+
+		private final int[] shared;
+
+		private final int mask;
+
+		SharedTrigramCounts(int postings) {
+			int capacity = Integer.highestOneBit(Math.max(postings, 4) - 1) << 2;
+			this.documents = new int[capacity];
+			this.shared = new int[capacity];
+			this.mask = capacity - 1;
+			Arrays.fill(this.documents, EMPTY);
+		}
+
+		void increment(int document) {
+			int slot = (document * 0x9E3779B9) & this.mask;
+			while (this.documents[slot] != document && this.documents[slot] != EMPTY) {
+				slot = (slot + 1) & this.mask;
+			}
+			this.documents[slot] = document;
+			this.shared[slot]++;
+		}
+
+		int get(int document) {
+			int slot = (document * 0x9E3779B9) & this.mask;
+			while (this.documents[slot] != EMPTY) {
+				if (this.documents[slot] == document) {
+					return this.shared[slot];
+				}
+				slot = (slot + 1) & this.mask;
+			}
+			return 0;
+		}
+
+		int capacity() {
+			return this.documents.length;
+		}
+
+	}
+
+}
@@ -15,6 +15,7 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import org.springframework.samples.petclinic.system.ReferenceData;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.util.StringUtils;
@@ -38,24 +39,30 @@ class PetController {
 
 	private final OwnerRepository owners;
 
-	public PetController(OwnerRepository owners) {
+	private final OwnerIdentityMap loadedOwners;
+
+	private final ReferenceData referenceData;
+
+	public PetController(OwnerRepository owners, OwnerIdentityMap loadedOwners, ReferenceData referenceData) {
 		this.owners = owners;
+		this.loadedOwners = loadedOwners;
+		this.referenceData = referenceData;
 	}
 
 	@ModelAttribute("types")
 	public Collection<PetType> populatePetTypes() {
-		return this.owners.findPetTypes();
+		return this.referenceData.getPetTypes().getAll();
 	}
 
 	@ModelAttribute("owner")
 	public Owner findOwner(@PathVariable("ownerId") int ownerId) {
-		return this.owners.findById(ownerId);
+		return this.loadedOwners.findById(ownerId);
 	}
 
 	@ModelAttribute("pet")
 	public Pet findPet(@PathVariable("ownerId") int ownerId,
 			@PathVariable(name = "petId", required = false) Integer petId) {
-		return petId == null ? new Pet() : this.owners.findById(ownerId).getPet(petId);
+		return petId == null ? new Pet() : this.loadedOwners.findById(ownerId).getPet(petId);
 	}
 
 	@InitBinder("owner")
@@ -106,10 +113,26 @@ class PetController {
 			return VIEWS_PETS_CREATE_OR_UPDATE_FORM;
 		}
 		else {
-			owner.addPet(pet);
-			this.owners.save(owner);
+			updatePetDetails(owner, pet);
 			return "redirect:/owners/{ownerId}";
 		}
 	}
 
+	/**
+	 * Copy the edited details onto the owner's own pet, in case the pet model attribute
+	 * is not the instance held by the owner (e.g. after a validation round trip).
+	 */
+	private void updatePetDetails(Owner owner, Pet pet) {
+		Pet existingPet = (pet.getId() != null) ? owner.getPet(pet.getId()) : null;
+		if (existingPet != null) {
+			existingPet.setName(pet.getName());
+			existingPet.setBirthDate(pet.getBirthDate());
+			existingPet.setType(pet.getType());
+		}
+		else {
+			owner.addPet(pet);
+		}
+		this.owners.save(owner);
+	}
+
 }
@@ -15,9 +15,13 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import org.springframework.samples.petclinic.model.NamedEntity;
 
 /**
@@ -25,6 +29,8 @@ import org.springframework.samples.petclinic.model.NamedEntity;
  */
 @Entity
 @Table(name = "types")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "petTypes")
 public class PetType extends NamedEntity {
 
 }
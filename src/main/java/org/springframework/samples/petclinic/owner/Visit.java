@@ -17,11 +17,15 @@ package org.springframework.samples.petclinic.owner;
 
 import java.time.LocalDate;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Table;
 import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.samples.petclinic.model.BaseEntity;
 
@@ -33,6 +37,8 @@ import org.springframework.samples.petclinic.model.BaseEntity;
  */
 @Entity
 @Table(name = "visits")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "visits")
 public class Visit extends BaseEntity {
 
 	@Column(name = "visit_date")
@@ -40,6 +46,7 @@ public class Visit extends BaseEntity {
 	private LocalDate date;
 
 	@NotEmpty
+	@Size(max = 255)
 	private String description;
 
 	/**
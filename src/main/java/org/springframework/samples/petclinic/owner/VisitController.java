@@ -19,6 +19,7 @@ import java.util.Map;
 
 import javax.validation.Valid;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
@@ -27,6 +28,7 @@ import org.springframework.web.bind.annotation.InitBinder;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.server.ResponseStatusException;
 
 /**
  * @author Juergen Hoeller
@@ -38,10 +40,15 @@ import org.springframework.web.bind.annotation.PostMapping;
 @Controller
 class VisitController {
 
-	private final OwnerRepository owners;
+	private static final String VIEWS_VISITS_CREATE_FORM = "pets/createOrUpdateVisitForm";
 
-	public VisitController(OwnerRepository owners) {
-		this.owners = owners;
+	private final OwnerIdentityMap loadedOwners;
+
+	private final VisitRepository visits;
+
+	public VisitController(OwnerIdentityMap loadedOwners, VisitRepository visits) {
+		this.loadedOwners = loadedOwners;
+		this.visits = visits;
 	}
 
 	@InitBinder
@@ -50,44 +57,44 @@ class VisitController {
 	}
 
 	/**
-	 * Called before each and every @RequestMapping annotated method. 2 goals: - Make sure
-	 * we always have fresh data - Since we do not use the session scope, make sure that
-	 * Pet object always has an id (Even though id is not part of the form fields)
-	 * @param petId
-	 * @return Pet
+	 * Called before each and every @RequestMapping annotated method. Only creates the new
+	 * visit: the owner and the pet are loaded when a form is rendered, a successful
+	 * submission does not need them.
+	 * @return Visit
 	 */
 	@ModelAttribute("visit")
-	public Visit loadPetWithVisit(@PathVariable("ownerId") int ownerId, @PathVariable("petId") int petId,
-			Map<String, Object> model) {
-		Owner owner = this.owners.findById(ownerId);
-		Pet pet = owner.getPet(petId);
-		model.put("pet", pet);
-		model.put("owner", owner);
-		Visit visit = new Visit();
-		pet.addVisit(visit);
-		return visit;
+	public Visit newVisit() {
+		return new Visit();
 	}
 
-	// Spring MVC calls method loadPetWithVisit(...) before initNewVisitForm is
-	// called
 	@GetMapping("/owners/{ownerId}/pets/{petId}/visits/new")
-	public String initNewVisitForm(@PathVariable("petId") int petId, Map<String, Object> model) {
-		return "pets/createOrUpdateVisitForm";
+	public String initNewVisitForm(@PathVariable("ownerId") int ownerId, @PathVariable("petId") int petId,
+			Map<String, Object> model) {
+		addOwnerAndPet(ownerId, petId, model);
+		return VIEWS_VISITS_CREATE_FORM;
 	}
 
-	// Spring MVC calls method loadPetWithVisit(...) before processNewVisitForm is
-	// called
 	@PostMapping("/owners/{ownerId}/pets/{petId}/visits/new")
-	public String processNewVisitForm(@ModelAttribute Owner owner, @PathVariable int petId, @Valid Visit visit,
-			BindingResult result) {
+	public String processNewVisitForm(@PathVariable("ownerId") int ownerId, @PathVariable("petId") int petId,
+			@Valid Visit visit, BindingResult result, Map<String, Object> model) {
 		if (result.hasErrors()) {
-			return "pets/createOrUpdateVisitForm";
+			addOwnerAndPet(ownerId, petId, model);
+			return VIEWS_VISITS_CREATE_FORM;
 		}
-		else {
-			owner.addVisit(petId, visit);
-			this.owners.save(owner);
-			return "redirect:/owners/{ownerId}";
+		if (!this.visits.addVisit(ownerId, petId, visit)) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Invalid Pet identifier!");
 		}
+		return "redirect:/owners/{ownerId}";
+	}
+
+	private void addOwnerAndPet(int ownerId, int petId, Map<String, Object> model) {
+		Owner owner = this.loadedOwners.findById(ownerId);
+		Pet pet = (owner != null) ? owner.getPet(petId) : null;
+		if (pet == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Invalid Pet identifier!");
+		}
+		model.put("owner", owner);
+		model.put("pet", pet);
 	}
 
 }
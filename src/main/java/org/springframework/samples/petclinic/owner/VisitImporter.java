@@ -0,0 +1,259 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Streams {@link Visit}s from JSON lines or CSV into the data store.
+ * <p>
+ * Every line is one visit of the pet with the given id. Lines are validated like the
+ * visit form and collected into batches of a fixed size, each of which is written as a
+ * single JDBC batch in its own transaction; memory use does not depend on the size of the
+ * input. Lines that cannot be parsed, fail validation or refer to an unknown pet are
+ * reported in the {@link ImportResult} and do not stop the import. A batch rejected by
+ * the database as a whole, e.g. for a constraint the validation does not cover, is
+ * retried one line at a time to report the offending lines.
+ * <ul>
+ * <li>JSON lines: <code>{"petId": 7, "date": "2013-01-01", "description": "rabies
+ * shot"}</code></li>
+ * <li>CSV: <code>petId,date,description</code>, with an optional header line</li>
+ * </ul>
+ * A missing date means today, as in the visit form.
+ */
+@Component
+public class VisitImporter {
+
+	private final VisitRepository visits;
+
+	private final Validator validator;
+
+	private final ObjectMapper objectMapper;
+
+	private final int batchSize;
+
+	public VisitImporter(VisitRepository visits, Validator validator, ObjectMapper objectMapper,
+			@Value("${petclinic.visits.import.batch-size:1000}") int batchSize) {
+		this.visits = visits;
+		this.validator = validator;
+		this.objectMapper = objectMapper;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Import visits given as one JSON object per line.
+	 * @param input the JSON lines
+	 * @return the outcome of the import
+	 */
+	public ImportResult importJsonLines(Reader input) throws IOException {
+		return importVisits(input, false);
+	}
+
+	/**
+	 * Import visits given as CSV.
+	 * @param input the CSV lines
+	 * @return the outcome of the import
+	 */
+	public ImportResult importCsv(Reader input) throws IOException {
+		return importVisits(input, true);
+	}
+
+	private ImportResult importVisits(Reader input, boolean csv) throws IOException {
+		long start = System.nanoTime();
+		ImportResult result = new ImportResult();
+		Batch batch = new Batch(this.batchSize);
+		BufferedReader reader = new BufferedReader(input);
+		long lineNumber = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			if (!StringUtils.hasText(line) || (csv && lineNumber == 1 && isHeader(line))) {
+				continue;
+			}
+			Visit visit = new Visit();
+			int petId;
+			try {
+				petId = csv ? parseCsv(line, visit) : parseJson(line, visit);
+			}
+			catch (IllegalArgumentException | DateTimeParseException ex) {
+				result.addError(lineNumber, ex.getMessage());
+				continue;
+			}
+			Set<ConstraintViolation<Visit>> violations = this.validator.validate(visit);
+			if (!violations.isEmpty()) {
+				result.addError(lineNumber,
+						violations.stream().map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+								.sorted().collect(Collectors.joining(", ")));
+				continue;
+			}
+			batch.add(lineNumber, petId, visit);
+			if (batch.isFull()) {
+				write(batch, result);
+			}
+		}
+		write(batch, result);
+		result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+		return result;
+	}
+
+	private void write(Batch batch, ImportResult result) {
+		if (batch.lines.isEmpty()) {
+			return;
+		}
+		int[] inserted;
+		try {
+			inserted = this.visits.addVisits(batch.petIds, batch.visits);
+		}
+		catch (DataIntegrityViolationException ex) {
+			// the batch was rolled back, find the offending lines one at a time
+			writeEach(batch, result);
+			batch.clear();
+			return;
+		}
+		for (int i = 0; i < inserted.length; i++) {
+			report(batch, i, inserted[i], result);
+		}
+		batch.clear();
+	}
+
+	private void writeEach(Batch batch, ImportResult result) {
+		for (int i = 0; i < batch.lines.size(); i++) {
+			try {
+				int[] inserted = this.visits.addVisits(Collections.singletonList(batch.petIds.get(i)),
+						Collections.singletonList(batch.visits.get(i)));
+				report(batch, i, inserted[0], result);
+			}
+			catch (DataIntegrityViolationException ex) {
+				result.addError(batch.lines.get(i), ex.getMostSpecificCause().getMessage());
+			}
+		}
+	}
+
+	private static void report(Batch batch, int index, int inserted, ImportResult result) {
+		if (inserted == 0) {
+			result.addError(batch.lines.get(index), "petId " + batch.petIds.get(index) + " does not exist");
+		}
+		else {
+			result.addImported(1);
+		}
+	}
+
+	private int parseJson(String line, Visit visit) {
+		JsonNode node;
+		try {
+			node = this.objectMapper.readTree(line);
+		}
+		catch (JsonProcessingException ex) {
+			throw new IllegalArgumentException("Malformed JSON: " + ex.getOriginalMessage());
+		}
+		JsonNode petId = node.path("petId");
+		if (!petId.canConvertToInt()) {
+			throw new IllegalArgumentException("petId is missing or not a number");
+		}
+		if (node.hasNonNull("date")) {
+			visit.setDate(LocalDate.parse(node.get("date").asText()));
+		}
+		if (node.hasNonNull("description")) {
+			visit.setDescription(node.get("description").asText());
+		}
+		return petId.asInt();
+	}
+
+	private int parseCsv(String line, Visit visit) {
+		List<String> fields = CsvParser.parseLine(line);
+		if (fields.size() != 3) {
+			throw new IllegalArgumentException("Expected 3 fields but found " + fields.size());
+		}
+		int petId;
+		try {
+			petId = Integer.parseInt(fields.get(0).trim());
+		}
+		catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("petId is not a number: " + fields.get(0));
+		}
+		if (StringUtils.hasText(fields.get(1))) {
+			visit.setDate(LocalDate.parse(fields.get(1).trim()));
+		}
+		visit.setDescription(fields.get(2));
+		return petId;
+	}
+
+	private static boolean isHeader(String line) {
+		String start = line.replace("\"", "").trim().toLowerCase(Locale.ROOT);
+		return start.startsWith("petid") || start.startsWith("pet_id");
+	}
+
+	/**
+	 * The parsed visits awaiting the next JDBC batch, with their line numbers.
+	 */
+	private static final class Batch {
+
+		private final int size;
+
+		private List<Long> lines;
+
+		private List<Integer> petIds;
+
+		private List<Visit> visits;
+
+		Batch(int size) {
+			this.size = size;
+			clear();
+		}
+
+		void add(long line, int petId, Visit visit) {
+			this.lines.add(line);
+			this.petIds.add(petId);
+			this.visits.add(visit);
+		}
+
+		boolean isFull() {
+			return this.visits.size() >= this.size;
+		}
+
+		/**
+		 * Start a new batch; the lists of the written one are left to the repository.
+		 */
+		void clear() {
+			this.lines = new ArrayList<>(this.size);
+			this.petIds = new ArrayList<>(this.size);
+			this.visits = new ArrayList<>(this.size);
+		}
+
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Cache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+
+/**
+ * Write path for {@link Visit}s that goes straight to the <code>visits</code> table.
+ * <p>
+ * Adding a visit through {@link Owner#addVisit(Integer, Visit)} and
+ * {@link OwnerRepository#save(Owner)} loads, merges and dirty-checks the whole owner
+ * aggregate, so its cost grows with the visit history of every pet of the owner. Here a
+ * visit is a single <code>INSERT ... SELECT</code> whose <code>WHERE</code> clause is the
+ * existence check, and the cached copies of the aggregate are evicted instead of updated,
+ * the owners only once the transaction has committed.
+ */
+@Repository
+public class VisitRepository {
+
+	private static final String INSERT_VISIT = "INSERT INTO visits (pet_id, visit_date, description) "
+			+ "SELECT id, ?, ? FROM pets WHERE id = ? AND owner_id = ?";
+
+	private static final String INSERT_PET_VISIT = "INSERT INTO visits (pet_id, visit_date, description) "
+			+ "SELECT id, ?, ? FROM pets WHERE id = ?";
+
+	private static final String OWNERS_OF_PETS = "SELECT DISTINCT owner_id FROM pets WHERE id IN (:petIds)";
+
+	private static final String PET_VISITS = Pet.class.getName() + ".visits";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+	private final EntityManagerFactory entityManagerFactory;
+
+	private final OwnerCacheEvictions ownerEvictions;
+
+	public VisitRepository(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory,
+			ObjectProvider<CacheManager> cacheManager) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+		this.entityManagerFactory = entityManagerFactory;
+		this.ownerEvictions = new OwnerCacheEvictions(cacheManager);
+	}
+
+	/**
+	 * Save a new {@link Visit} of the given pet, provided the pet exists and belongs to
+	 * the given owner. On success the generated id is set on the visit.
+	 * @param ownerId the id of the pet's owner
+	 * @param petId the id of the visited pet
+	 * @param visit the visit to save
+	 * @return {@literal true} if the visit was saved, {@literal false} if there is no
+	 * such pet for the owner
+	 */
+	@Transactional
+	public boolean addVisit(int ownerId, int petId, Visit visit) throws DataAccessException {
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		int inserted = this.jdbcTemplate.update(connection -> {
+			PreparedStatement statement = connection.prepareStatement(INSERT_VISIT, new String[] { "id" });
+			statement.setDate(1, (visit.getDate() != null) ? Date.valueOf(visit.getDate()) : null);
+			statement.setString(2, visit.getDescription());
+			statement.setInt(3, petId);
+			statement.setInt(4, ownerId);
+			return statement;
+		}, keyHolder);
+		if (inserted == 0) {
+			return false;
+		}
+		visit.setId(keyHolder.getKey().intValue());
+		evictVisitsOf(petId);
+		this.ownerEvictions.evictAfterCommit(Collections.singletonList(ownerId));
+		return true;
+	}
+
+	/**
+	 * Save new {@link Visit}s of any pets as a single JDBC batch, skipping visits of pets
+	 * that do not exist.
+	 * @param petIds the id of the pet of each visit, in the order of {@code visits}
+	 * @param visits the visits to save
+	 * @return the number of rows inserted for each visit: 1 if saved, 0 if the pet does
+	 * not exist, or {@link java.sql.Statement#SUCCESS_NO_INFO} if the driver does not
+	 * report it
+	 */
+	@Transactional
+	public int[] addVisits(List<Integer> petIds, List<Visit> visits) throws DataAccessException {
+		Assert.isTrue(petIds.size() == visits.size(), "Expected one pet id per visit");
+		int[] inserted = this.jdbcTemplate.batchUpdate(INSERT_PET_VISIT, new BatchPreparedStatementSetter() {
+
+			@Override
+			public void setValues(PreparedStatement statement, int i) throws SQLException {
+				Visit visit = visits.get(i);
+				statement.setDate(1, (visit.getDate() != null) ? Date.valueOf(visit.getDate()) : null);
+				statement.setString(2, visit.getDescription());
+				statement.setInt(3, petIds.get(i));
+			}
+
+			@Override
+			public int getBatchSize() {
+				return visits.size();
+			}
+
+		});
+		Set<Integer> distinctPetIds = new HashSet<>(petIds);
+		distinctPetIds.forEach(this::evictVisitsOf);
+		evictOwnersOf(distinctPetIds);
+		return inserted;
+	}
+
+	/**
+	 * Drop the owners of the given pets from the owners cache after commit, as
+	 * {@link #addVisit(int, int, Visit)} does for a single visit.
+	 */
+	private void evictOwnersOf(Set<Integer> petIds) {
+		this.ownerEvictions.evictAfterCommit(this.namedParameterJdbcTemplate.queryForList(OWNERS_OF_PETS,
+				Collections.singletonMap("petIds", petIds), Integer.class));
+	}
+
+	/**
+	 * Drop the pet's visits from the Hibernate second-level cache, which does not see
+	 * plain JDBC writes.
+	 */
+	private void evictVisitsOf(int petId) {
+		this.entityManagerFactory.getCache().unwrap(Cache.class).evictCollectionData(PET_VISITS, petId);
+	}
+
+}
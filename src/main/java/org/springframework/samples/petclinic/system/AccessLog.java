@@ -0,0 +1,357 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compact binary format of the access logs written by {@link AccessLogFilter} and
+ * replayed by the load generator in <code>src/load/java</code>.
+ * <p>
+ * A log starts with the magic bytes <code>PCAL</code>, a version byte and the time the
+ * recording started, in milliseconds since the epoch. Each request follows as a record
+ * prefixed by its length, so that a record cut short by a crash is recognized and
+ * dropped. A record holds the start of the request in microseconds since the recording
+ * started, its duration in microseconds, the response status, the method, the path and
+ * the request parameters. Numbers are written as variable-length integers and strings as
+ * their length followed by their UTF-8 bytes, which keeps a typical request under 64
+ * bytes.
+ */
+public final class AccessLog {
+
+	static final int VERSION = 1;
+
+	private static final byte[] MAGIC = { 'P', 'C', 'A', 'L' };
+
+	private static final String[] METHODS = { "GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS", "TRACE" };
+
+	// method code of methods not in METHODS, followed by the method name
+	private static final int OTHER_METHOD = 0xFF;
+
+	private AccessLog() {
+	}
+
+	/**
+	 * Write the header of a new access log.
+	 * @param out the stream to write to
+	 * @param startMillis the time the recording started, in milliseconds since the epoch
+	 */
+	static void writeHeader(OutputStream out, long startMillis) throws IOException {
+		out.write(MAGIC);
+		out.write(VERSION);
+		Buffer buffer = new Buffer();
+		buffer.writeLong(startMillis);
+		buffer.writeTo(out);
+	}
+
+	/**
+	 * Encode a record, including its length prefix, into the given buffer, replacing its
+	 * contents.
+	 */
+	static void encode(Buffer buffer, Entry entry) {
+		buffer.beginRecord();
+		buffer.writeLong(entry.getStartMicros());
+		buffer.writeLong(entry.getDurationMicros());
+		buffer.writeLong(entry.getStatus());
+		int method = methodCode(entry.getMethod());
+		buffer.write(method);
+		if (method == OTHER_METHOD) {
+			buffer.writeString(entry.getMethod());
+		}
+		buffer.writeString(entry.getPath());
+		buffer.writeLong(entry.getParameters().size());
+		for (Map.Entry<String, String[]> parameter : entry.getParameters().entrySet()) {
+			buffer.writeString(parameter.getKey());
+			buffer.writeLong(parameter.getValue().length);
+			for (String value : parameter.getValue()) {
+				buffer.writeString(value);
+			}
+		}
+		buffer.endRecord();
+	}
+
+	private static int methodCode(String method) {
+		for (int i = 0; i < METHODS.length; i++) {
+			if (METHODS[i].equals(method)) {
+				return i;
+			}
+		}
+		return OTHER_METHOD;
+	}
+
+	/**
+	 * A request recorded in an access log.
+	 */
+	public static final class Entry {
+
+		private final long startMicros;
+
+		private final long durationMicros;
+
+		private final int status;
+
+		private final String method;
+
+		private final String path;
+
+		private final Map<String, String[]> parameters;
+
+		public Entry(long startMicros, long durationMicros, int status, String method, String path,
+				Map<String, String[]> parameters) {
+			this.startMicros = startMicros;
+			this.durationMicros = durationMicros;
+			this.status = status;
+			this.method = method;
+			this.path = path;
+			this.parameters = Collections.unmodifiableMap(parameters);
+		}
+
+		/**
+		 * Return when the request started, in microseconds since the recording started.
+		 */
+		public long getStartMicros() {
+			return this.startMicros;
+		}
+
+		/**
+		 * Return how long the request took to handle, in microseconds.
+		 */
+		public long getDurationMicros() {
+			return this.durationMicros;
+		}
+
+		public int getStatus() {
+			return this.status;
+		}
+
+		public String getMethod() {
+			return this.method;
+		}
+
+		/**
+		 * Return the path of the request within the application, without query string.
+		 */
+		public String getPath() {
+			return this.path;
+		}
+
+		/**
+		 * Return the query and form parameters of the request, in their original order.
+		 */
+		public Map<String, String[]> getParameters() {
+			return this.parameters;
+		}
+
+		@Override
+		public String toString() {
+			return this.method + " " + this.path + " " + this.status + " " + this.durationMicros + "us";
+		}
+
+	}
+
+	/**
+	 * Reads the records of an access log one at a time.
+	 */
+	public static final class Reader implements Closeable {
+
+		private final DataInputStream in;
+
+		private final long startMillis;
+
+		/**
+		 * Create a reader, reading the header of the log straight away.
+		 * @param in the access log, preferably buffered
+		 * @throws IOException if the stream cannot be read or is not an access log
+		 */
+		public Reader(InputStream in) throws IOException {
+			this.in = new DataInputStream(in);
+			byte[] magic = new byte[MAGIC.length];
+			this.in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException("Not an access log");
+			}
+			int version = this.in.readUnsignedByte();
+			if (version != VERSION) {
+				throw new IOException("Unsupported access log version " + version);
+			}
+			this.startMillis = readLong(this.in);
+		}
+
+		/**
+		 * Return the time the recording started, in milliseconds since the epoch.
+		 */
+		public long getStartMillis() {
+			return this.startMillis;
+		}
+
+		/**
+		 * Read the next record.
+		 * @return the next record, or {@code null} at the end of the log or if the last
+		 * record was cut short
+		 * @throws IOException if the log cannot be read
+		 */
+		public Entry read() throws IOException {
+			byte[] record;
+			try {
+				record = new byte[(int) readLong(this.in)];
+				this.in.readFully(record);
+			}
+			catch (EOFException ex) {
+				return null;
+			}
+			DataInputStream body = new DataInputStream(new ByteArrayInputStream(record));
+			long startMicros = readLong(body);
+			long durationMicros = readLong(body);
+			int status = (int) readLong(body);
+			int code = body.readUnsignedByte();
+			String method = (code == OTHER_METHOD) ? readString(body) : METHODS[code];
+			String path = readString(body);
+			long count = readLong(body);
+			Map<String, String[]> parameters = new LinkedHashMap<>();
+			for (int i = 0; i < count; i++) {
+				String name = readString(body);
+				String[] values = new String[(int) readLong(body)];
+				for (int j = 0; j < values.length; j++) {
+					values[j] = readString(body);
+				}
+				parameters.put(name, values);
+			}
+			return new Entry(startMicros, durationMicros, status, method, path, parameters);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+
+		private static long readLong(DataInputStream in) throws IOException {
+			long value = 0;
+			for (int shift = 0;; shift += 7) {
+				int b = in.readUnsignedByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+		}
+
+		private static String readString(DataInputStream in) throws IOException {
+			byte[] bytes = new byte[(int) readLong(in)];
+			in.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+	}
+
+	/**
+	 * Growable byte array with variable-length encoding of numbers and strings, reused by
+	 * the filter to encode records without allocating.
+	 * <p>
+	 * The length prefix of a record is only known once the record is written, so the
+	 * record starts after room for the longest prefix, which is then filled from the end.
+	 */
+	static final class Buffer {
+
+		// bytes of the longest length prefix, a 32-bit number
+		private static final int MAX_PREFIX = 5;
+
+		private byte[] bytes = new byte[256];
+
+		private int offset;
+
+		private int size;
+
+		void write(int b) {
+			ensureCapacity(1);
+			this.bytes[this.size++] = (byte) b;
+		}
+
+		void write(byte[] b, int offset, int length) {
+			ensureCapacity(length);
+			System.arraycopy(b, offset, this.bytes, this.size, length);
+			this.size += length;
+		}
+
+		/**
+		 * Write an unsigned number, seven bits per byte, least significant first.
+		 */
+		void writeLong(long value) {
+			while ((value & ~0x7FL) != 0) {
+				write((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			write((int) value);
+		}
+
+		void writeString(String value) {
+			byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+			writeLong(utf8.length);
+			write(utf8, 0, utf8.length);
+		}
+
+		void writeTo(OutputStream out) throws IOException {
+			out.write(this.bytes, this.offset, this.size - this.offset);
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOfRange(this.bytes, this.offset, this.size);
+		}
+
+		void reset() {
+			this.offset = 0;
+			this.size = 0;
+		}
+
+		void beginRecord() {
+			this.offset = 0;
+			this.size = MAX_PREFIX;
+		}
+
+		void endRecord() {
+			int length = this.size - MAX_PREFIX;
+			int prefix = 1;
+			for (int rest = length >>> 7; rest != 0; rest >>>= 7) {
+				prefix++;
+			}
+			this.offset = MAX_PREFIX - prefix;
+			int position = this.offset;
+			while ((length & ~0x7F) != 0) {
+				this.bytes[position++] = (byte) ((length & 0x7F) | 0x80);
+				length >>>= 7;
+			}
+			this.bytes[position] = (byte) length;
+		}
+
+		private void ensureCapacity(int length) {
+			if (this.size + length > this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, Math.max(this.size + length, this.bytes.length << 1));
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Binary access log of all requests, switched on by setting
+ * <code>petclinic.access-log.file</code>. See {@link AccessLogFilter}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("petclinic.access-log.file")
+class AccessLogConfiguration {
+
+	@Bean
+	FilterRegistrationBean<AccessLogFilter> petclinicAccessLogFilter(@Value("${petclinic.access-log.file}") String file,
+			@Value("${petclinic.access-log.queue-size:8192}") int queueSize) throws IOException {
+		FilterRegistrationBean<AccessLogFilter> registration = new FilterRegistrationBean<>(
+				new AccessLogFilter(Paths.get(file), queueSize));
+		// time as much of the request as possible
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+		return registration;
+	}
+
+	@Bean
+	MeterBinder petclinicAccessLogMetrics(FilterRegistrationBean<AccessLogFilter> registration) {
+		return registry -> FunctionCounter
+				.builder("petclinic.access.log.dropped", registration.getFilter(), AccessLogFilter::getDropped)
+				.description("Requests dropped from the access log").register(registry);
+	}
+
+}
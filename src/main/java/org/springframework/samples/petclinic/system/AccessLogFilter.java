@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Records every request in a binary access log (see {@link AccessLog}), so that the
+ * traffic can be replayed later by the load generator in <code>src/load/java</code>.
+ * <p>
+ * Requests are encoded on the thread handling them, into a per-thread buffer, and handed
+ * to a single writer thread through a bounded queue. Request threads never wait for the
+ * disk: when the queue is full the record is dropped and counted instead. Static
+ * resources are not recorded, browsers cache them.
+ */
+class AccessLogFilter extends OncePerRequestFilter {
+
+	private static final String[] STATIC_RESOURCES = { "/resources/", "/webjars/" };
+
+	private final OutputStream out;
+
+	private final long startNanos;
+
+	private final BlockingQueue<byte[]> queue;
+
+	private final ThreadLocal<AccessLog.Buffer> buffers = ThreadLocal.withInitial(AccessLog.Buffer::new);
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final Thread writer;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Create a new filter, starting a new access log.
+	 * @param file the access log, replaced if it exists
+	 * @param queueSize the maximum number of records waiting to be written
+	 * @throws IOException if the access log cannot be created
+	 */
+	AccessLogFilter(Path file, int queueSize) throws IOException {
+		if (file.toAbsolutePath().getParent() != null) {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+		}
+		this.out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+		AccessLog.writeHeader(this.out, System.currentTimeMillis());
+		this.startNanos = System.nanoTime();
+		this.queue = new ArrayBlockingQueue<>(queueSize);
+		this.writer = new Thread(this::write, "access-log-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Return the number of records dropped so far because the writer fell behind.
+	 */
+	long getDropped() {
+		return this.dropped.get();
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		String path = path(request);
+		for (String prefix : STATIC_RESOURCES) {
+			if (path.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			chain.doFilter(request, response);
+			failed = false;
+		}
+		finally {
+			if (this.running) {
+				long end = System.nanoTime();
+				// the error page is only rendered further up, after the exception
+				int status = failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+				record(new AccessLog.Entry(TimeUnit.NANOSECONDS.toMicros(start - this.startNanos),
+						TimeUnit.NANOSECONDS.toMicros(end - start), status, request.getMethod(), path(request),
+						request.getParameterMap()));
+			}
+		}
+	}
+
+	private void record(AccessLog.Entry entry) {
+		AccessLog.Buffer buffer = this.buffers.get();
+		AccessLog.encode(buffer, entry);
+		if (!this.queue.offer(buffer.toByteArray())) {
+			this.dropped.incrementAndGet();
+		}
+	}
+
+	private static String path(HttpServletRequest request) {
+		// as sent, i.e. still URL encoded
+		return request.getRequestURI().substring(request.getContextPath().length());
+	}
+
+	private void write() {
+		try {
+			while (this.running || !this.queue.isEmpty()) {
+				byte[] record = this.queue.poll(100, TimeUnit.MILLISECONDS);
+				if (record != null) {
+					this.out.write(record);
+				}
+				else {
+					// idle, let readers see what was recorded so far
+					this.out.flush();
+				}
+			}
+		}
+		catch (IOException ex) {
+			this.running = false;
+			logger.error("Stopped writing the access log", ex);
+		}
+		catch (InterruptedException ex) {
+			this.running = false;
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			try {
+				this.out.close();
+			}
+			catch (IOException ex) {
+				logger.error("Could not close the access log", ex);
+			}
+		}
+	}
+
+	/**
+	 * Write the remaining records and close the access log.
+	 */
+	@Override
+	public void destroy() {
+		this.running = false;
+		try {
+			this.writer.join();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		if (this.dropped.get() > 0) {
+			logger.warn("Dropped " + this.dropped.get() + " requests from the access log");
+		}
+	}
+
+}
@@ -16,40 +16,190 @@
 
 package org.springframework.samples.petclinic.system;
 
+import java.util.Arrays;
+import java.util.List;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
 import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import javax.cache.configuration.MutableConfiguration;
+import javax.cache.CacheManager;
 
 /**
  * Cache configuration intended for caches providing the JCache API. This configuration
  * creates the used cache for the application and enables statistics that become
  * accessible via JMX.
+ * <p>
+ * Caches are configured through Ehcache's own API, as the JCache API cannot limit their
+ * size: each gets a heap tier sized in entries, an optional off-heap tier sized in bytes
+ * and a time to live, all set in <code>application.properties</code> (see
+ * {@link CacheTierProperties}). Alternatively, the application caches can be served by
+ * Caffeine, see {@link CaffeineCacheConfiguration}.
+ * <p>
+ * The same cache manager backs Hibernate's second-level cache. Every entity and
+ * collection region is created here with a policy matching how the data changes, and
+ * Hibernate is told to fail rather than silently create a region with defaults.
+ * <p>
+ * Whichever the provider, every application cache is decorated with a
+ * {@link SingleFlightCache}, so concurrent misses of a key wait for a single load and
+ * popular values are refreshed shortly before they expire.
  */
 @Configuration(proxyBeanMethods = false)
 @EnableCaching
+@EnableConfigurationProperties(CacheTierProperties.class)
 class CacheConfiguration {
 
+	/**
+	 * Application caches whose hits are copies, so that callers are free to modify them.
+	 */
+	static final List<String> COPYING_CACHES = Arrays.asList("owners");
+
+	/**
+	 * Application caches shared by reference: the list of all vets, evicted by
+	 * VetDirectory.refresh(). VetDirectory rebuilds its snapshot when a hit returns
+	 * another list than before, so it must not be copied.
+	 */
+	static final List<String> SHARED_CACHES = Arrays.asList("vets");
+
+	/**
+	 * Hibernate second-level cache regions. Hibernate only stores its own immutable,
+	 * disassembled entry state, so entries are kept by reference on the heap.
+	 */
+	static final List<String> REGIONS = Arrays.asList("petTypes", "specialties", "vetEntities", "vetSpecialties",
+			"pets", "ownerPets", "visits", "petVisits");
+
 	@Bean
-	public JCacheManagerCustomizer petclinicCacheConfigurationCustomizer() {
+	public JCacheManagerCustomizer petclinicCacheConfigurationCustomizer(CacheTierProperties properties) {
 		return cm -> {
-			cm.createCache("vets", cacheConfiguration());
+			COPYING_CACHES.forEach(name -> createCache(cm, name, cacheConfiguration(properties.getCache(name), true)));
+			SHARED_CACHES.forEach(name -> createCache(cm, name, cacheConfiguration(properties.getCache(name), false)));
+			createRegions(cm, properties);
 		};
 	}
 
+	@Bean
+	static BeanPostProcessor petclinicSingleFlightCacheManagerPostProcessor(
+			ObjectProvider<CacheTierProperties> properties, ObjectProvider<MeterRegistry> registry) {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof org.springframework.cache.CacheManager
+						&& !(bean instanceof SingleFlightCacheManager)) {
+					return new SingleFlightCacheManager((org.springframework.cache.CacheManager) bean,
+							properties.getObject(), registry);
+				}
+				return bean;
+			}
+
+		};
+	}
+
+	@Bean
+	SingleFlightCacheMeterBinderProvider petclinicSingleFlightCacheMeterBinderProvider() {
+		return new SingleFlightCacheMeterBinderProvider();
+	}
+
 	/**
-	 * Create a simple configuration that enable statistics via the JCache programmatic
-	 * configuration API.
+	 * Publish the statistics of the Hibernate second-level cache regions; the application
+	 * caches are bound by Spring Boot.
+	 */
+	@Bean
+	MeterBinder petclinicSecondLevelCacheMetrics(ObjectProvider<CacheManager> cacheManager) {
+		return registry -> cacheManager.ifAvailable(manager -> REGIONS.forEach(name -> {
+			javax.cache.Cache<Object, Object> region = manager.getCache(name);
+			if (region != null) {
+				// same tags as the application caches, or Prometheus would reject either
+				JCacheMetrics.monitor(registry, region, Tags.of("cache.manager", "hibernate", "name", name));
+			}
+		}));
+	}
+
+	@Bean
+	public HibernatePropertiesCustomizer petclinicSecondLevelCacheCustomizer(
+			ObjectProvider<CacheManager> cacheManager) {
+		// the second-level cache stays off (see application.properties) when caching is
+		// disabled, e.g. with spring.cache.type=none
+		return properties -> cacheManager.ifAvailable(manager -> {
+			properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+			properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+			properties.put(ConfigSettings.CACHE_MANAGER, manager);
+			properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+		});
+	}
+
+	static void createRegions(CacheManager cm, CacheTierProperties properties) {
+		REGIONS.forEach(name -> createCache(cm, name, cacheConfiguration(properties.getCache(name), false)));
+	}
+
+	private static void createCache(CacheManager cm, String name,
+			CacheConfigurationBuilder<Object, Object> configuration) {
+		cm.createCache(name, Eh107Configuration.fromEhcacheCacheConfiguration(configuration));
+		cm.enableStatistics(name, true);
+	}
+
+	/**
+	 * Create the Ehcache configuration of a cache.
 	 * <p>
-	 * Within the configuration object that is provided by the JCache API standard, there
-	 * is only a very limited set of configuration options. The really relevant
-	 * configuration options (like the size limit) must be set via a configuration
-	 * mechanism that is provided by the selected JCache implementation.
+	 * Entries on the off-heap tier are always stored serialized. Entries on the heap tier
+	 * are kept by reference unless {@code copyValues} is set, in which case every cache
+	 * hit returns a detached copy.
+	 * @param tiers the sizing and expiry of the cache
+	 * @param copyValues whether to copy values when they are stored and read
 	 */
-	private javax.cache.configuration.Configuration<Object, Object> cacheConfiguration() {
-		return new MutableConfiguration<>().setStatisticsEnabled(true);
+	static CacheConfigurationBuilder<Object, Object> cacheConfiguration(CacheTierProperties.Tiers tiers,
+			boolean copyValues) {
+		ResourcePoolsBuilder resources = ResourcePoolsBuilder.heap(tiers.getHeapEntries());
+		if (tiers.getOffHeap() != null) {
+			resources = resources.offheap(tiers.getOffHeap().toBytes(), MemoryUnit.B);
+		}
+		CacheConfigurationBuilder<Object, Object> builder = CacheConfigurationBuilder
+				.newCacheConfigurationBuilder(Object.class, Object.class, resources)
+				.withExpiry((tiers.getTimeToLive() != null)
+						? ExpiryPolicyBuilder.timeToLiveExpiration(tiers.getTimeToLive())
+						: ExpiryPolicyBuilder.noExpiration());
+		return copyValues ? builder.withValueSerializingCopier() : builder;
+	}
+
+	/**
+	 * Binds the metrics of the cache underneath a {@link SingleFlightCache}, which Spring
+	 * Boot would not recognize otherwise.
+	 */
+	static class SingleFlightCacheMeterBinderProvider implements CacheMeterBinderProvider<SingleFlightCache> {
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public MeterBinder getMeterBinder(SingleFlightCache cache, Iterable<Tag> tags) {
+			Object nativeCache = cache.getNativeCache();
+			if (nativeCache instanceof javax.cache.Cache) {
+				return new JCacheMetrics<>((javax.cache.Cache<Object, Object>) nativeCache, tags);
+			}
+			if (nativeCache instanceof com.github.benmanes.caffeine.cache.Cache) {
+				return new CaffeineCacheMetrics<>(
+						(com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeCache, cache.getName(), tags);
+			}
+			return null;
+		}
+
 	}
 
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Sizing and expiry of the application caches and Hibernate second-level cache regions,
+ * bound from <code>petclinic.caches.&lt;name&gt;.*</code>.
+ * <p>
+ * Every cache has a heap tier, sized in entries, and an optional off-heap tier, sized in
+ * bytes. Entries on the heap tier are the hot subset; the rest live serialized outside
+ * the Java heap, where they neither add to old generation growth nor to the work of the
+ * garbage collector.
+ * <p>
+ * With the Caffeine provider only the heap tier exists; instead, entries of caches that
+ * know how to load their values can be refreshed in the background.
+ */
+@ConfigurationProperties("petclinic")
+public class CacheTierProperties {
+
+	/**
+	 * Backend of the application caches. The Hibernate second-level cache always uses
+	 * Ehcache.
+	 */
+	private Provider cacheProvider = Provider.EHCACHE;
+
+	/**
+	 * How eagerly cached values are refreshed before they expire, 0 to never refresh them
+	 * early. See SingleFlightCache.
+	 */
+	private double cacheEarlyRefreshBeta = 1.0;
+
+	private final Map<String, Tiers> caches = new LinkedHashMap<>();
+
+	public Provider getCacheProvider() {
+		return this.cacheProvider;
+	}
+
+	public void setCacheProvider(Provider cacheProvider) {
+		this.cacheProvider = cacheProvider;
+	}
+
+	public double getCacheEarlyRefreshBeta() {
+		return this.cacheEarlyRefreshBeta;
+	}
+
+	public void setCacheEarlyRefreshBeta(double cacheEarlyRefreshBeta) {
+		this.cacheEarlyRefreshBeta = cacheEarlyRefreshBeta;
+	}
+
+	public Map<String, Tiers> getCaches() {
+		return this.caches;
+	}
+
+	/**
+	 * Return the settings of the given cache, the defaults if it is not configured.
+	 */
+	public Tiers getCache(String name) {
+		return this.caches.getOrDefault(name, new Tiers());
+	}
+
+	/**
+	 * Available backends of the application caches.
+	 */
+	public enum Provider {
+
+		/**
+		 * Ehcache through JCache, with heap and off-heap tiers.
+		 */
+		EHCACHE,
+
+		/**
+		 * Caffeine, with frequency-aware (W-TinyLFU) admission and refresh after write.
+		 */
+		CAFFEINE
+
+	}
+
+	/**
+	 * Settings of a single cache.
+	 */
+	public static class Tiers {
+
+		/**
+		 * Maximum number of entries kept on the heap.
+		 */
+		private long heapEntries = 1000;
+
+		/**
+		 * Size of the off-heap tier, none if not set.
+		 */
+		private DataSize offHeap;
+
+		/**
+		 * Time after which an entry expires once created or updated, never if not set.
+		 */
+		private Duration timeToLive;
+
+		/**
+		 * Time after which an absent value, cached for an id that does not exist,
+		 * expires. The time to live if not set; application caches only.
+		 */
+		private Duration negativeTimeToLive;
+
+		/**
+		 * Time after which an entry read is reloaded in the background, Caffeine only.
+		 */
+		private Duration refreshAfterWrite;
+
+		public long getHeapEntries() {
+			return this.heapEntries;
+		}
+
+		public void setHeapEntries(long heapEntries) {
+			this.heapEntries = heapEntries;
+		}
+
+		public DataSize getOffHeap() {
+			return this.offHeap;
+		}
+
+		public void setOffHeap(DataSize offHeap) {
+			this.offHeap = offHeap;
+		}
+
+		public Duration getTimeToLive() {
+			return this.timeToLive;
+		}
+
+		public void setTimeToLive(Duration timeToLive) {
+			this.timeToLive = timeToLive;
+		}
+
+		public Duration getNegativeTimeToLive() {
+			return this.negativeTimeToLive;
+		}
+
+		public void setNegativeTimeToLive(Duration negativeTimeToLive) {
+			this.negativeTimeToLive = negativeTimeToLive;
+		}
+
+		public Duration getRefreshAfterWrite() {
+			return this.refreshAfterWrite;
+		}
+
+		public void setRefreshAfterWrite(Duration refreshAfterWrite) {
+			this.refreshAfterWrite = refreshAfterWrite;
+		}
+
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.cache.Caching;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Pageable;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.vet.VetRepository;
+
+/**
+ * Serves the application caches from Caffeine instead of Ehcache, selected with
+ * <code>petclinic.cache-provider=caffeine</code>.
+ * <p>
+ * Caffeine admits new entries by their estimated access frequency (W-TinyLFU), which
+ * keeps the popular owners cached when the working set exceeds the cache, even under
+ * scans. The owners and vets caches load missing entries themselves and, with
+ * <code>petclinic.caches.&lt;name&gt;.refresh-after-write</code>, reload entries in the
+ * background once they are older than that, so requests keep being served the current
+ * value instead of waiting for a reload.
+ * <p>
+ * The Hibernate second-level cache stays on Ehcache, in a cache manager of its own.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "petclinic", name = "cache-provider", havingValue = "caffeine")
+class CaffeineCacheConfiguration {
+
+	@Bean
+	public CacheManager cacheManager(CacheTierProperties properties, OwnerRepository owners, VetRepository vets) {
+		CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+
+			@Override
+			protected Cache adaptCaffeineCache(String name,
+					com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+				Cache adapted = super.adaptCaffeineCache(name, cache);
+				return CacheConfiguration.COPYING_CACHES.contains(name) ? new CopyingCache(adapted) : adapted;
+			}
+
+		};
+		cacheManager.setCacheNames(Collections.emptyList());
+		Map<String, CacheLoader<Object, Object>> loaders = new HashMap<>();
+		loaders.put("owners", id -> owners.loadById((Integer) id));
+		loaders.put("vets", all -> new ArrayList<>(vets.findAll(Pageable.unpaged()).getContent()));
+		for (String name : CacheConfiguration.COPYING_CACHES) {
+			registerCache(cacheManager, name, properties, loaders.get(name));
+		}
+		for (String name : CacheConfiguration.SHARED_CACHES) {
+			registerCache(cacheManager, name, properties, loaders.get(name));
+		}
+		return cacheManager;
+	}
+
+	@Bean(destroyMethod = "close")
+	public javax.cache.CacheManager secondLevelCacheManager(CacheTierProperties properties) {
+		EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching
+				.getCachingProvider(EhcacheCachingProvider.class.getName());
+		javax.cache.CacheManager cacheManager = provider.getCacheManager(
+				URI.create("urn:petclinic:second-level-cache:" + UUID.randomUUID()),
+				new DefaultConfiguration(getClass().getClassLoader()));
+		CacheConfiguration.createRegions(cacheManager, properties);
+		return cacheManager;
+	}
+
+	private static void registerCache(CaffeineCacheManager cacheManager, String name, CacheTierProperties properties,
+			CacheLoader<Object, Object> loader) {
+		Caffeine<Object, Object> caffeine = caffeine(properties.getCache(name), loader != null);
+		cacheManager.registerCustomCache(name, (loader != null) ? caffeine.build(loader) : caffeine.build());
+	}
+
+	/**
+	 * Create the Caffeine builder of a cache. The off-heap tier, if any, is ignored.
+	 * @param tiers the sizing and expiry of the cache
+	 * @param loading whether the cache loads its entries, only such caches can be
+	 * refreshed
+	 */
+	static Caffeine<Object, Object> caffeine(CacheTierProperties.Tiers tiers, boolean loading) {
+		Caffeine<Object, Object> caffeine = Caffeine.newBuilder().maximumSize(tiers.getHeapEntries()).recordStats();
+		if (tiers.getTimeToLive() != null) {
+			caffeine.expireAfterWrite(tiers.getTimeToLive());
+		}
+		if (loading && tiers.getRefreshAfterWrite() != null) {
+			caffeine.refreshAfterWrite(tiers.getRefreshAfterWrite());
+		}
+		return caffeine;
+	}
+
+}
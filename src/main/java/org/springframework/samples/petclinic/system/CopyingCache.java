@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.util.SerializationUtils;
+
+/**
+ * Decorates a {@link Cache} keeping its values by reference so that values are copied
+ * when stored and when read, like a JCache cache storing by value. Callers are free to
+ * modify what they get without affecting the cache.
+ */
+final class CopyingCache implements Cache {
+
+	private final Cache cache;
+
+	CopyingCache(Cache cache) {
+		this.cache = cache;
+	}
+
+	@Override
+	public String getName() {
+		return this.cache.getName();
+	}
+
+	@Override
+	public Object getNativeCache() {
+		return this.cache.getNativeCache();
+	}
+
+	@Override
+	public ValueWrapper get(Object key) {
+		return copy(this.cache.get(key));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, Class<T> type) {
+		return (T) copy(this.cache.get(key, type));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, Callable<T> valueLoader) {
+		// the loaded value itself is only ever seen by the cache
+		return (T) copy(this.cache.get(key, valueLoader));
+	}
+
+	@Override
+	public void put(Object key, Object value) {
+		this.cache.put(key, copy(value));
+	}
+
+	@Override
+	public ValueWrapper putIfAbsent(Object key, Object value) {
+		return copy(this.cache.putIfAbsent(key, copy(value)));
+	}
+
+	@Override
+	public void evict(Object key) {
+		this.cache.evict(key);
+	}
+
+	@Override
+	public boolean evictIfPresent(Object key) {
+		return this.cache.evictIfPresent(key);
+	}
+
+	@Override
+	public void clear() {
+		this.cache.clear();
+	}
+
+	@Override
+	public boolean invalidate() {
+		return this.cache.invalidate();
+	}
+
+	private static ValueWrapper copy(ValueWrapper wrapper) {
+		return (wrapper != null) ? new SimpleValueWrapper(copy(wrapper.get())) : null;
+	}
+
+	private static Object copy(Object value) {
+		return (value != null) ? SerializationUtils.deserialize(SerializationUtils.serialize(value)) : null;
+	}
+
+}
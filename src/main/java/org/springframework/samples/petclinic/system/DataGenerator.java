@@ -0,0 +1,514 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * Adds synthetic owners with their pets and visits, and vets with their specialties, to
+ * the data store, for load tests that need realistic volumes. Runs on startup with the
+ * "generate" profile, sized by {@link DataGeneratorProperties}, e.g.
+ * <code>--spring.profiles.active=generate --petclinic.generate.owners=1000000</code>; add
+ * <code>--spring.main.web-application-type=none</code> to exit once done.
+ * <p>
+ * The data is skewed like a real clinic's: last names follow a Zipf distribution, so a
+ * few are shared by many owners, and so do pet types; most owners have one or two pets
+ * and a few have many; half the pets have no visit yet while one in a hundred has a
+ * history of more than a hundred visits; vets have from none to all specialties.
+ * <p>
+ * Owners are generated in chunks, each with random streams of its own derived from the
+ * seed, so the data does not depend on which worker writes which chunk. The number of
+ * pets and visits of every chunk is drawn first, from a separate stream, which gives each
+ * chunk disjoint id ranges in all tables before any row is written. Workers then write
+ * the chunks in parallel with explicit ids, each in one transaction with one JDBC batch
+ * per table, and the identity columns are moved past the new rows at the end.
+ */
+@Component
+@Profile("generate")
+@EnableConfigurationProperties(DataGeneratorProperties.class)
+public class DataGenerator implements ApplicationRunner {
+
+	private static final Log logger = LogFactory.getLog(DataGenerator.class);
+
+	private static final String INSERT_OWNER = "INSERT INTO owners (id, first_name, last_name, address, city, telephone) "
+			+ "VALUES (?, ?, ?, ?, ?, ?)";
+
+	private static final String INSERT_PET = "INSERT INTO pets (id, name, birth_date, type_id, owner_id) "
+			+ "VALUES (?, ?, ?, ?, ?)";
+
+	private static final String INSERT_VISIT = "INSERT INTO visits (id, pet_id, visit_date, description) "
+			+ "VALUES (?, ?, ?, ?)";
+
+	private static final String INSERT_VET = "INSERT INTO vets (id, first_name, last_name) VALUES (?, ?, ?)";
+
+	private static final String INSERT_VET_SPECIALTY = "INSERT INTO vet_specialties (vet_id, specialty_id) VALUES (?, ?)";
+
+	private static final int MAX_PETS = 10;
+
+	// independent random streams of a chunk
+	private static final long SHAPE = 1;
+
+	private static final long CONTENT = 2;
+
+	private static final long NAMES = 3;
+
+	private static final long VETS = 4;
+
+	private static final String[] COMMON_LAST_NAMES = { "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+			"Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson",
+			"Thomas", "Taylor", "Moore", "Jackson", "Martin", "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez",
+			"Clark", "Ramirez", "Lewis", "Robinson", "Walker", "Young", "Allen", "King", "Wright", "Scott", "Torres",
+			"Nguyen", "Hill", "Flores" };
+
+	private static final String[] FIRST_NAMES = { "George", "Betty", "Eduardo", "Harold", "Peter", "Jean", "Jeff",
+			"Maria", "David", "Carlos", "James", "Linda", "Robert", "Patricia", "John", "Jennifer", "Michael",
+			"Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Daniel",
+			"Karen", "Helen", "Rafael", "Henry", "Sharon", "Linh", "Aiko", "Omar", "Fatima", "Ivan", "Olga" };
+
+	private static final String[] SYLLABLES = { "an", "ber", "cha", "da", "el", "fra", "gor", "ha", "is", "jo", "ken",
+			"lin", "mar", "no", "ol", "per", "qui", "ros", "sen", "tur", "vis", "wil", "xa", "yor", "zel" };
+
+	private static final String[] STREETS = { "W. Liberty St.", "Cardinal Ave.", "Commerce St.", "Friendly St.",
+			"S. Fair Way", "N. Lake St.", "Oak Blvd.", "Maple St.", "Blackhawk Trail", "Independence La.",
+			"University Ave.", "Park St.", "Monroe St.", "Regent St.", "Williamson St." };
+
+	private static final String[] CITIES = { "Madison", "Sun Prairie", "McFarland", "Windsor", "Monona", "Waunakee",
+			"Middleton", "Fitchburg", "Verona", "Stoughton" };
+
+	private static final String[] PET_NAMES = { "Leo", "Basil", "Rosy", "Jewel", "Iggy", "George", "Samantha", "Max",
+			"Lucky", "Mulligan", "Freddy", "Sly", "Bella", "Charlie", "Luna", "Daisy", "Milo", "Coco", "Oscar", "Nala",
+			"Simba", "Pepper", "Ginger", "Rocky" };
+
+	private static final String[] VISIT_REASONS = { "rabies shot", "neutered", "spayed", "annual checkup",
+			"dental cleaning", "vaccination", "skin allergy", "limping", "ear infection", "weight check" };
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final DataGeneratorProperties properties;
+
+	public DataGenerator(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			DataGeneratorProperties properties) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.properties = properties;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		generate();
+	}
+
+	/**
+	 * Add the configured number of owners and vets to the data store.
+	 * @return the number of rows added to each table
+	 */
+	public Result generate() {
+		long start = System.nanoTime();
+		List<Integer> types = this.jdbcTemplate.queryForList("SELECT id FROM types ORDER BY id", Integer.class);
+		List<Integer> specialties = this.jdbcTemplate.queryForList("SELECT id FROM specialties ORDER BY id",
+				Integer.class);
+		Assert.state(!types.isEmpty(), "There are no pet types for the generated pets");
+		Shape shape = new Shape(this.properties, types.size());
+		List<Chunk> chunks = plan(shape);
+		ExecutorService workers = Executors.newFixedThreadPool(this.properties.getThreads(),
+				new CustomizableThreadFactory("data-generator-"));
+		try {
+			List<Future<?>> written = new ArrayList<>(chunks.size());
+			for (Chunk chunk : chunks) {
+				written.add(workers.submit(() -> write(chunk, shape, types)));
+			}
+			for (Future<?> chunk : written) {
+				await(chunk);
+			}
+		}
+		finally {
+			workers.shutdownNow();
+		}
+		Result result = new Result();
+		for (Chunk chunk : chunks) {
+			result.owners += chunk.owners;
+			result.pets += chunk.pets;
+			result.visits += chunk.visits;
+		}
+		result.vets = writeVets(specialties);
+		restartIdentities();
+		result.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+		logger.info(result);
+		return result;
+	}
+
+	/**
+	 * Split the owners into chunks, drawing how many pets and visits each has to assign
+	 * them their ids.
+	 */
+	private List<Chunk> plan(Shape shape) {
+		int chunkSize = this.properties.getChunkSize();
+		int owners = this.properties.getOwners();
+		int ownerId = nextId("owners");
+		long petId = nextId("pets");
+		long visitId = nextId("visits");
+		List<Chunk> chunks = new ArrayList<>(owners / chunkSize + 1);
+		for (int index = 0; index * (long) chunkSize < owners; index++) {
+			Chunk chunk = new Chunk(index, ownerId + index * chunkSize, Math.min(chunkSize, owners - index * chunkSize),
+					(int) petId, (int) visitId);
+			SplittableRandom random = random(index, SHAPE);
+			for (int i = 0; i < chunk.owners; i++) {
+				int pets = shape.pets(random);
+				chunk.pets += pets;
+				for (int pet = 0; pet < pets; pet++) {
+					chunk.visits += shape.visits(random);
+				}
+			}
+			petId += chunk.pets;
+			visitId += chunk.visits;
+			chunks.add(chunk);
+		}
+		Assert.state(visitId <= Integer.MAX_VALUE && petId <= Integer.MAX_VALUE, "Too many rows for integer ids");
+		return chunks;
+	}
+
+	private void write(Chunk chunk, Shape shape, List<Integer> types) {
+		this.transactionTemplate.executeWithoutResult(status -> this.jdbcTemplate
+				.execute((ConnectionCallback<Void>) connection -> insert(connection, chunk, shape, types)));
+	}
+
+	private Void insert(Connection connection, Chunk chunk, Shape shape, List<Integer> types) throws SQLException {
+		SplittableRandom counts = random(chunk.index, SHAPE);
+		SplittableRandom random = random(chunk.index, CONTENT);
+		LocalDate until = shape.until;
+		int petId = chunk.firstPetId;
+		int visitId = chunk.firstVisitId;
+		try (PreparedStatement owners = connection.prepareStatement(INSERT_OWNER);
+				PreparedStatement pets = connection.prepareStatement(INSERT_PET);
+				PreparedStatement visits = connection.prepareStatement(INSERT_VISIT)) {
+			for (int i = 0; i < chunk.owners; i++) {
+				int ownerId = chunk.firstOwnerId + i;
+				owners.setInt(1, ownerId);
+				owners.setString(2, pick(FIRST_NAMES, random));
+				owners.setString(3, shape.lastName(random));
+				owners.setString(4, (1 + random.nextInt(9999)) + " " + pick(STREETS, random));
+				owners.setString(5, pick(CITIES, random));
+				owners.setString(6, "608" + (5550000 + random.nextInt(10000)));
+				owners.addBatch();
+				int petCount = shape.pets(counts);
+				for (int pet = 0; pet < petCount; pet++, petId++) {
+					int visitCount = shape.visits(counts);
+					LocalDate birthDate = until.minusDays(30 + random.nextInt(15 * 365));
+					pets.setInt(1, petId);
+					pets.setString(2, pick(PET_NAMES, random));
+					pets.setDate(3, Date.valueOf(birthDate));
+					pets.setInt(4, types.get(shape.petType(random)));
+					pets.setInt(5, ownerId);
+					pets.addBatch();
+					int[] days = new int[visitCount];
+					int lifetime = (int) ChronoUnit.DAYS.between(birthDate, until);
+					for (int visit = 0; visit < visitCount; visit++) {
+						days[visit] = random.nextInt(lifetime + 1);
+					}
+					Arrays.sort(days);
+					for (int day : days) {
+						visits.setInt(1, visitId++);
+						visits.setInt(2, petId);
+						visits.setDate(3, Date.valueOf(birthDate.plusDays(day)));
+						visits.setString(4, pick(VISIT_REASONS, random));
+						visits.addBatch();
+					}
+				}
+			}
+			// parents first, for the foreign keys
+			owners.executeBatch();
+			pets.executeBatch();
+			visits.executeBatch();
+		}
+		return null;
+	}
+
+	private int writeVets(List<Integer> specialties) {
+		int firstVetId = nextId("vets");
+		int vets = this.properties.getVets();
+		SplittableRandom random = random(-1, VETS);
+		List<Object[]> vetRows = new ArrayList<>(vets);
+		List<Object[]> specialtyRows = new ArrayList<>();
+		for (int i = 0; i < vets; i++) {
+			int vetId = firstVetId + i;
+			vetRows.add(new Object[] { vetId, pick(FIRST_NAMES, random), pick(COMMON_LAST_NAMES, random) });
+			// a quarter without specialties, then one, or more with decreasing likelihood
+			int count = 0;
+			if (random.nextInt(4) != 0) {
+				count = 1;
+				while (count < specialties.size() && random.nextBoolean()) {
+					count++;
+				}
+			}
+			List<Integer> shuffled = new ArrayList<>(specialties);
+			for (int s = 0; s < Math.min(count, shuffled.size()); s++) {
+				int chosen = s + random.nextInt(shuffled.size() - s);
+				specialtyRows.add(new Object[] { vetId, shuffled.get(chosen) });
+				shuffled.set(chosen, shuffled.get(s));
+			}
+		}
+		this.transactionTemplate.executeWithoutResult(status -> {
+			this.jdbcTemplate.batchUpdate(INSERT_VET, vetRows);
+			this.jdbcTemplate.batchUpdate(INSERT_VET_SPECIALTY, specialtyRows);
+		});
+		return vets;
+	}
+
+	/**
+	 * Make the identity columns continue after the rows inserted with explicit ids.
+	 */
+	private void restartIdentities() {
+		String database = this.jdbcTemplate
+				.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+		for (String table : new String[] { "owners", "pets", "visits", "vets" }) {
+			int next = nextId(table);
+			if ("MySQL".equals(database) || "MariaDB".equals(database)) {
+				this.jdbcTemplate.execute("ALTER TABLE " + table + " AUTO_INCREMENT = " + next);
+			}
+			else {
+				this.jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + next);
+			}
+		}
+	}
+
+	private int nextId(String table) {
+		return this.jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table, Integer.class);
+	}
+
+	private SplittableRandom random(long chunk, long stream) {
+		// adjacent seeds of SplittableRandom give unrelated sequences
+		return new SplittableRandom(this.properties.getSeed() * 31 + chunk * 8 + stream);
+	}
+
+	/**
+	 * Make up a name of two or three random syllables; such names share trigrams and
+	 * prefixes the way real names do.
+	 * @param random the source of the syllables
+	 * @return a capitalized name
+	 */
+	public static String syntheticName(SplittableRandom random) {
+		StringBuilder name = new StringBuilder();
+		for (int i = 2 + random.nextInt(2); i > 0; i--) {
+			name.append(pick(SYLLABLES, random));
+		}
+		name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+		return name.toString();
+	}
+
+	private static String pick(String[] values, SplittableRandom random) {
+		return values[random.nextInt(values.length)];
+	}
+
+	private static void await(Future<?> chunk) {
+		try {
+			chunk.get();
+		}
+		catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new IllegalStateException("Failed to write generated data", ex.getCause());
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while writing generated data", ex);
+		}
+	}
+
+	/**
+	 * The distributions the data is drawn from.
+	 */
+	private final class Shape {
+
+		private final LocalDate until;
+
+		private final String[] lastNames;
+
+		private final double[] lastNameWeights;
+
+		private final double[] petTypeWeights;
+
+		private final int maxVisits;
+
+		Shape(DataGeneratorProperties properties, int petTypes) {
+			this.until = (properties.getUntil() != null) ? properties.getUntil() : LocalDate.now();
+			this.lastNames = new String[Math.max(1, properties.getLastNames())];
+			SplittableRandom random = random(-1, NAMES);
+			for (int i = 0; i < this.lastNames.length; i++) {
+				this.lastNames[i] = (i < COMMON_LAST_NAMES.length) ? COMMON_LAST_NAMES[i] : syntheticName(random);
+			}
+			this.lastNameWeights = zipf(this.lastNames.length);
+			this.petTypeWeights = zipf(petTypes);
+			this.maxVisits = properties.getMaxVisitsPerPet();
+		}
+
+		/**
+		 * One owner in twenty has no pets, the others one, or more with halving
+		 * likelihood.
+		 */
+		int pets(SplittableRandom random) {
+			if (random.nextInt(20) == 0) {
+				return 0;
+			}
+			int pets = 1;
+			while (pets < MAX_PETS && random.nextBoolean()) {
+				pets++;
+			}
+			return pets;
+		}
+
+		/**
+		 * Pareto distributed number of visits: a pet has at least {@code n} visits with a
+		 * probability of {@code 1 / (n + 1)}.
+		 */
+		int visits(SplittableRandom random) {
+			double visits = 1.0 / (1.0 - random.nextDouble()) - 1.0;
+			return (int) Math.min(visits, this.maxVisits);
+		}
+
+		String lastName(SplittableRandom random) {
+			return this.lastNames[sample(this.lastNameWeights, random)];
+		}
+
+		int petType(SplittableRandom random) {
+			return sample(this.petTypeWeights, random);
+		}
+
+		/**
+		 * Cumulative weights of a Zipf distribution with exponent 1: the n-th value is
+		 * {@code n} times less likely than the first.
+		 */
+		private double[] zipf(int count) {
+			double[] cumulative = new double[count];
+			double sum = 0;
+			for (int i = 0; i < count; i++) {
+				sum += 1.0 / (i + 1);
+				cumulative[i] = sum;
+			}
+			return cumulative;
+		}
+
+		private int sample(double[] cumulative, SplittableRandom random) {
+			int index = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+			return Math.min((index < 0) ? -index - 1 : index, cumulative.length - 1);
+		}
+
+	}
+
+	/**
+	 * A range of consecutive owners, with the ids of their pets and visits.
+	 */
+	private static final class Chunk {
+
+		private final int index;
+
+		private final int firstOwnerId;
+
+		private final int owners;
+
+		private final int firstPetId;
+
+		private final int firstVisitId;
+
+		private int pets;
+
+		private int visits;
+
+		Chunk(int index, int firstOwnerId, int owners, int firstPetId, int firstVisitId) {
+			this.index = index;
+			this.firstOwnerId = firstOwnerId;
+			this.owners = owners;
+			this.firstPetId = firstPetId;
+			this.firstVisitId = firstVisitId;
+		}
+
+	}
+
+	/**
+	 * Number of rows added to each table.
+	 */
+	public static final class Result {
+
+		private long owners;
+
+		private long pets;
+
+		private long visits;
+
+		private long vets;
+
+		private long elapsedMillis;
+
+		public long getOwners() {
+			return this.owners;
+		}
+
+		public long getPets() {
+			return this.pets;
+		}
+
+		public long getVisits() {
+			return this.visits;
+		}
+
+		public long getVets() {
+			return this.vets;
+		}
+
+		public long getElapsedMillis() {
+			return this.elapsedMillis;
+		}
+
+		@Override
+		public String toString() {
+			long rows = this.owners + this.pets + this.visits + this.vets;
+			return "Generated " + this.owners + " owners, " + this.pets + " pets, " + this.visits + " visits and "
+					+ this.vets + " vets in " + this.elapsedMillis + " ms ("
+					+ rows * 1000 / Math.max(1, this.elapsedMillis) + " rows/s)";
+		}
+
+	}
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.LocalDate;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Size and shape of the synthetic data added by the {@link DataGenerator}, bound from
+ * <code>petclinic.generate.*</code>.
+ */
+@ConfigurationProperties("petclinic.generate")
+public class DataGeneratorProperties {
+
+	/**
+	 * Number of owners to add, each with their pets and visits.
+	 */
+	private int owners = 100_000;
+
+	/**
+	 * Number of vets to add.
+	 */
+	private int vets = 100;
+
+	/**
+	 * Seed of the random data. The same seed and chunk size always give the same data,
+	 * whatever the number of threads.
+	 */
+	private long seed = 42;
+
+	/**
+	 * Number of workers writing chunks in parallel.
+	 */
+	private int threads = 4;
+
+	/**
+	 * Owners per chunk, written in one transaction as one JDBC batch per table.
+	 */
+	private int chunkSize = 1000;
+
+	/**
+	 * Number of distinct last names; a few of them are shared by many owners.
+	 */
+	private int lastNames = 5000;
+
+	/**
+	 * Longest history of a pet, in visits.
+	 */
+	private int maxVisitsPerPet = 1000;
+
+	/**
+	 * Date of the latest visits, today if not set.
+	 */
+	private LocalDate until;
+
+	public int getOwners() {
+		return this.owners;
+	}
+
+	public void setOwners(int owners) {
+		this.owners = owners;
+	}
+
+	public int getVets() {
+		return this.vets;
+	}
+
+	public void setVets(int vets) {
+		this.vets = vets;
+	}
+
+	public long getSeed() {
+		return this.seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public int getThreads() {
+		return this.threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getChunkSize() {
+		return this.chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public int getLastNames() {
+		return this.lastNames;
+	}
+
+	public void setLastNames(int lastNames) {
+		this.lastNames = lastNames;
+	}
+
+	public int getMaxVisitsPerPet() {
+		return this.maxVisitsPerPet;
+	}
+
+	public void setMaxVisitsPerPet(int maxVisitsPerPet) {
+		this.maxVisitsPerPet = maxVisitsPerPet;
+	}
+
+	public LocalDate getUntil() {
+		return this.until;
+	}
+
+	public void setUntil(LocalDate until) {
+		this.until = until;
+	}
+
+}
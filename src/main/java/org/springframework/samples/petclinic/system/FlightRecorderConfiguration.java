@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Java Flight Recorder events for repository calls, cache lookups and template rendering,
+ * and an actuator endpoint to record them, see {@link FlightRecorderEndpoint}. Events
+ * cost next to nothing unless a recording including them is running.
+ */
+@Configuration(proxyBeanMethods = false)
+class FlightRecorderConfiguration {
+
+	@Bean
+	static BeanPostProcessor petclinicRepositoryCallEventsPostProcessor() {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof RepositoryFactoryBeanSupport) {
+					((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory -> factory
+							.addRepositoryProxyPostProcessor((proxyFactory, repository) -> proxyFactory
+									.addAdvice(new RepositoryCallInterceptor(repository.getRepositoryInterface()))));
+				}
+				return bean;
+			}
+
+		};
+	}
+
+	@Bean
+	WebMvcConfigurer petclinicTemplateRenderingEvents() {
+		return new WebMvcConfigurer() {
+
+			@Override
+			public void addInterceptors(InterceptorRegistry registry) {
+				registry.addInterceptor(new TemplateRenderingInterceptor());
+			}
+
+		};
+	}
+
+	@Bean
+	FlightRecorderEndpoint flightRecorderEndpoint(@Value("${petclinic.flight-recorder.max-age:10m}") Duration maxAge,
+			@Value("${petclinic.flight-recorder.max-size:100MB}") DataSize maxSize) {
+		return new FlightRecorderEndpoint(maxAge, maxSize);
+	}
+
+}
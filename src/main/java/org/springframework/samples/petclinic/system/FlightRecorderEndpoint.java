@@ -0,0 +1,230 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Actuator endpoint controlling Java Flight Recorder recordings, which include the
+ * petclinic events ({@link RepositoryCallEvent}, {@link CacheLookupEvent} and
+ * {@link TemplateRenderingEvent}) next to the JVM's own:
+ * <ul>
+ * <li><code>GET /actuator/flightrecorder</code> lists the recordings</li>
+ * <li><code>POST /actuator/flightrecorder</code> starts a recording, with optional
+ * <code>settings</code> (<code>default</code> or <code>profile</code>) and
+ * <code>duration</code></li>
+ * <li><code>GET /actuator/flightrecorder/{id}</code> dumps the data recorded so far as a
+ * <code>.jfr</code> file</li>
+ * <li><code>DELETE /actuator/flightrecorder/{id}</code> stops and discards a
+ * recording</li>
+ * </ul>
+ * Recordings keep at most the last <code>maxAge</code> and <code>maxSize</code> of data,
+ * and leave out the initial system properties and environment variables, which may hold
+ * credentials.
+ */
+@Endpoint(id = "flightrecorder")
+public class FlightRecorderEndpoint {
+
+	private static final String[] SENSITIVE_EVENTS = { "jdk.InitialSystemProperty", "jdk.InitialEnvironmentVariable" };
+
+	private final Duration maxAge;
+
+	private final DataSize maxSize;
+
+	private Path dumps;
+
+	public FlightRecorderEndpoint(Duration maxAge, DataSize maxSize) {
+		this.maxAge = maxAge;
+		this.maxSize = maxSize;
+	}
+
+	@ReadOperation
+	public List<RecordingDescriptor> recordings() {
+		return FlightRecorder.getFlightRecorder().getRecordings().stream().map(RecordingDescriptor::new)
+				.collect(Collectors.toList());
+	}
+
+	@WriteOperation
+	public RecordingDescriptor start(@Nullable String settings, @Nullable Duration duration) {
+		String name = (settings != null) ? settings : "default";
+		Configuration configuration;
+		try {
+			configuration = Configuration.getConfiguration(name);
+		}
+		catch (IOException | ParseException ex) {
+			throw new InvalidEndpointRequestException("Unknown recording settings '" + name + "'",
+					"Unknown recording settings");
+		}
+		Recording recording = new Recording(configuration);
+		recording.setName("petclinic");
+		recording.enable(RepositoryCallEvent.class);
+		recording.enable(CacheLookupEvent.class);
+		recording.enable(TemplateRenderingEvent.class);
+		for (String event : SENSITIVE_EVENTS) {
+			recording.disable(event);
+		}
+		recording.setMaxAge(this.maxAge);
+		recording.setMaxSize(this.maxSize.toBytes());
+		if (duration != null) {
+			recording.setDuration(duration);
+		}
+		recording.start();
+		return new RecordingDescriptor(recording);
+	}
+
+	@ReadOperation(produces = "application/octet-stream")
+	public Resource dump(@Selector long id) {
+		Recording recording = find(id);
+		if (recording == null) {
+			return null;
+		}
+		try {
+			Path dump = dumps().resolve("petclinic-" + id + ".jfr");
+			recording.dump(dump);
+			return new FileSystemResource(dump);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	@DeleteOperation
+	public RecordingDescriptor stop(@Selector long id) {
+		Recording recording = find(id);
+		if (recording == null) {
+			return null;
+		}
+		if (recording.getState() == RecordingState.RUNNING) {
+			recording.stop();
+		}
+		RecordingDescriptor descriptor = new RecordingDescriptor(recording);
+		recording.close();
+		try {
+			Files.deleteIfExists(dumps().resolve("petclinic-" + id + ".jfr"));
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		return descriptor;
+	}
+
+	private static Recording find(long id) {
+		for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings()) {
+			if (recording.getId() == id) {
+				return recording;
+			}
+		}
+		return null;
+	}
+
+	private synchronized Path dumps() throws IOException {
+		if (this.dumps == null) {
+			this.dumps = Files.createTempDirectory("petclinic-recordings");
+			this.dumps.toFile().deleteOnExit();
+		}
+		return this.dumps;
+	}
+
+	/**
+	 * Description of a recording.
+	 */
+	public static final class RecordingDescriptor {
+
+		private final long id;
+
+		private final String name;
+
+		private final RecordingState state;
+
+		private final Instant startTime;
+
+		private final Duration duration;
+
+		private final long size;
+
+		private final Duration maxAge;
+
+		private final long maxSize;
+
+		RecordingDescriptor(Recording recording) {
+			this.id = recording.getId();
+			this.name = recording.getName();
+			this.state = recording.getState();
+			this.startTime = recording.getStartTime();
+			this.duration = recording.getDuration();
+			this.size = recording.getSize();
+			this.maxAge = recording.getMaxAge();
+			this.maxSize = recording.getMaxSize();
+		}
+
+		public long getId() {
+			return this.id;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public RecordingState getState() {
+			return this.state;
+		}
+
+		public Instant getStartTime() {
+			return this.startTime;
+		}
+
+		public Duration getDuration() {
+			return this.duration;
+		}
+
+		public long getSize() {
+			return this.size;
+		}
+
+		public Duration getMaxAge() {
+			return this.maxAge;
+		}
+
+		public long getMaxSize() {
+			return this.maxSize;
+		}
+
+	}
+
+}
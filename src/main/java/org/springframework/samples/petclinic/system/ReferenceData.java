@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.samples.petclinic.model.NamedEntities;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.vet.Specialty;
+import org.springframework.samples.petclinic.vet.VetRepository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of the reference data of the clinic: the {@link PetType}s and
+ * {@link Specialty}s. Both are read once from the data store and kept in a single
+ * immutable snapshot, so lookups by id or name never query the database.
+ * <p>
+ * {@link #refresh()} builds a new snapshot and swaps it in with a single volatile write;
+ * readers see either the old or the new reference data, never a mix.
+ */
+@Component
+public class ReferenceData {
+
+	private final OwnerRepository owners;
+
+	private final VetRepository vets;
+
+	private volatile Snapshot snapshot;
+
+	public ReferenceData(OwnerRepository owners, VetRepository vets) {
+		this.owners = owners;
+		this.vets = vets;
+	}
+
+	/**
+	 * (Re)load the reference data from the data store.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public synchronized void refresh() {
+		Snapshot previous = this.snapshot;
+		this.snapshot = new Snapshot((previous != null) ? previous.version + 1 : 1,
+				NamedEntities.of(this.owners.findPetTypes()), NamedEntities.of(this.vets.findSpecialties()));
+	}
+
+	public NamedEntities<PetType> getPetTypes() {
+		return snapshot().petTypes;
+	}
+
+	public NamedEntities<Specialty> getSpecialties() {
+		return snapshot().specialties;
+	}
+
+	/**
+	 * Return the version of the current snapshot, incremented on every refresh.
+	 */
+	public long getVersion() {
+		return snapshot().version;
+	}
+
+	private Snapshot snapshot() {
+		Snapshot current = this.snapshot;
+		if (current == null) {
+			// used before the application is ready
+			synchronized (this) {
+				if (this.snapshot == null) {
+					refresh();
+				}
+				current = this.snapshot;
+			}
+		}
+		return current;
+	}
+
+	private static final class Snapshot {
+
+		private final long version;
+
+		private final NamedEntities<PetType> petTypes;
+
+		private final NamedEntities<Specialty> specialties;
+
+		Snapshot(long version, NamedEntities<PetType> petTypes, NamedEntities<Specialty> specialties) {
+			this.version = version;
+			this.petTypes = petTypes;
+			this.specialties = specialties;
+		}
+
+	}
+
+}
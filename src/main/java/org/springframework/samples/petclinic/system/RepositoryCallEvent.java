@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a call of a Spring Data repository method.
+ */
+@Name("org.springframework.samples.petclinic.RepositoryCall")
+@Label("Repository Call")
+@Category({ "Petclinic", "Data" })
+@Description("Call of a Spring Data repository method")
+@StackTrace(false)
+class RepositoryCallEvent extends Event {
+
+	@Label("Repository")
+	String repository;
+
+	@Label("Query")
+	@Description("Name of the repository method")
+	String query;
+
+	@Label("Row Count")
+	@Description("Number of entities returned, -1 if unknown")
+	int rowCount;
+
+	@Label("Exception")
+	@Description("Class of the exception thrown, if any")
+	String exception;
+
+}
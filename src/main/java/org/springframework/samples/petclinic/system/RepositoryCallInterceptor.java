@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Records a {@link RepositoryCallEvent} for every call of a repository method while a
+ * flight recording including the event is running.
+ */
+class RepositoryCallInterceptor implements MethodInterceptor {
+
+	private final String repository;
+
+	RepositoryCallInterceptor(Class<?> repositoryInterface) {
+		this.repository = repositoryInterface.getSimpleName();
+	}
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		RepositoryCallEvent event = new RepositoryCallEvent();
+		if (!event.isEnabled()) {
+			return invocation.proceed();
+		}
+		event.begin();
+		try {
+			Object result = invocation.proceed();
+			event.rowCount = rowCount(result);
+			return result;
+		}
+		catch (Throwable ex) {
+			event.rowCount = -1;
+			event.exception = ex.getClass().getName();
+			throw ex;
+		}
+		finally {
+			if (event.shouldCommit()) {
+				event.repository = this.repository;
+				event.query = invocation.getMethod().getName();
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Count the entities of a repository method result without consuming it.
+	 */
+	static int rowCount(Object result) {
+		if (result == null) {
+			return 0;
+		}
+		if (result instanceof Collection) {
+			return ((Collection<?>) result).size();
+		}
+		if (result instanceof Slice) {
+			return ((Slice<?>) result).getNumberOfElements();
+		}
+		if (result instanceof Optional) {
+			return ((Optional<?>) result).isPresent() ? 1 : 0;
+		}
+		if (result instanceof Iterable || result instanceof Stream) {
+			return -1;
+		}
+		return 1;
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.Locale;
+
+/**
+ * Time spent on behalf of the current request, per kind of work, reported in the
+ * <code>Server-Timing</code> response header.
+ * <p>
+ * Only sampled requests carry a collector (see {@link ServerTimingFilter}); for all
+ * others {@link #current()} returns {@literal null} and instrumented code skips reading
+ * the clock. Timings are wall-clock and may nest: database time spent loading an owner
+ * into the cache counts towards both, and lazy loading while rendering a page towards
+ * both the database and the view.
+ */
+final class ServerTiming {
+
+	private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+
+	private final long[] nanos = new long[Metric.values().length];
+
+	private final int[] counts = new int[Metric.values().length];
+
+	/**
+	 * Return the collector of the request handled by this thread, {@literal null} if it
+	 * is not sampled.
+	 */
+	static ServerTiming current() {
+		return CURRENT.get();
+	}
+
+	static ServerTiming begin() {
+		ServerTiming timing = new ServerTiming();
+		CURRENT.set(timing);
+		return timing;
+	}
+
+	static void end() {
+		CURRENT.remove();
+	}
+
+	/**
+	 * Record time spent on the given kind of work.
+	 */
+	void add(Metric metric, long nanos) {
+		this.nanos[metric.ordinal()] += nanos;
+		this.counts[metric.ordinal()]++;
+	}
+
+	long getNanos(Metric metric) {
+		return this.nanos[metric.ordinal()];
+	}
+
+	int getCount(Metric metric) {
+		return this.counts[metric.ordinal()];
+	}
+
+	/**
+	 * Render the recorded timings as a <code>Server-Timing</code> header value, in
+	 * milliseconds.
+	 * @param totalNanos the time spent handling the request
+	 */
+	String toHeaderValue(long totalNanos) {
+		StringBuilder header = new StringBuilder(160);
+		for (Metric metric : Metric.values()) {
+			int count = this.counts[metric.ordinal()];
+			if (count > 0) {
+				append(header, metric.name, metric.description + " (" + count + ")", this.nanos[metric.ordinal()]);
+				header.append(", ");
+			}
+		}
+		append(header, "total", "Total", totalNanos);
+		return header.toString();
+	}
+
+	private static void append(StringBuilder header, String name, String description, long nanos) {
+		header.append(name).append(";desc=\"").append(description).append("\";dur=")
+				.append(String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0));
+	}
+
+	/**
+	 * Kinds of work that are timed.
+	 */
+	enum Metric {
+
+		DB("db", "JDBC statements"),
+
+		FLUSH("flush", "Hibernate flush"),
+
+		CACHE("cache", "Cache access"),
+
+		APP("app", "Controller"),
+
+		VIEW("view", "View rendering");
+
+		private final String name;
+
+		private final String description;
+
+		Metric(String name, String description) {
+			this.name = name;
+			this.description = description;
+		}
+
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Server-Timing response headers for a sample of requests, switched on by setting
+ * <code>petclinic.server-timing.sample-rate</code> above {@code 0}. See
+ * {@link ServerTimingFilter}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnExpression("${petclinic.server-timing.sample-rate:0} > 0")
+class ServerTimingConfiguration {
+
+	@Bean
+	FilterRegistrationBean<ServerTimingFilter> petclinicServerTimingFilter(
+			@Value("${petclinic.server-timing.sample-rate}") double sampleRate,
+			@Value("${petclinic.server-timing.buffer-size:1MB}") DataSize bufferSize) {
+		FilterRegistrationBean<ServerTimingFilter> registration = new FilterRegistrationBean<>(
+				new ServerTimingFilter(sampleRate, (int) bufferSize.toBytes()));
+		// time as much of the request as possible
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+		return registration;
+	}
+
+	@Bean
+	WebMvcConfigurer petclinicServerTimingInterceptor() {
+		return new WebMvcConfigurer() {
+
+			@Override
+			public void addInterceptors(InterceptorRegistry registry) {
+				registry.addInterceptor(new ServerTimingInterceptor());
+			}
+
+		};
+	}
+
+	@Bean
+	static BeanPostProcessor petclinicServerTimingDataSourcePostProcessor() {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof DataSource && !(bean instanceof ServerTimingDataSource)) {
+					return new ServerTimingDataSource((DataSource) bean);
+				}
+				return bean;
+			}
+
+		};
+	}
+
+	@Bean
+	HibernatePropertiesCustomizer petclinicServerTimingSessionEvents() {
+		return properties -> properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER,
+				ServerTimingSessionEventListener.class.getName());
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.samples.petclinic.system.ServerTiming.Metric;
+
+/**
+ * Times the JDBC statements of sampled requests, whichever way they are issued:
+ * Hibernate, {@code JdbcTemplate} or plain JDBC. Every <code>execute*</code> call counts
+ * as one statement, a batch included. Connections obtained while the current thread does
+ * not handle a sampled request are handed out as they are, so work moved to other
+ * threads, such as the writers of an import, is not attributed to the request.
+ */
+class ServerTimingDataSource extends DelegatingDataSource {
+
+	ServerTimingDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return timed(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return timed(super.getConnection(username, password));
+	}
+
+	private static Connection timed(Connection connection) {
+		if (ServerTiming.current() == null) {
+			return connection;
+		}
+		return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+				new Class<?>[] { ConnectionProxy.class }, new ConnectionHandler(connection));
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException ex) {
+			throw ex.getTargetException();
+		}
+	}
+
+	/**
+	 * Hands out timed statements of a connection.
+	 */
+	private static final class ConnectionHandler implements InvocationHandler {
+
+		private final Connection target;
+
+		ConnectionHandler(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Server-Timing proxy for " + this.target;
+			case "getTargetConnection":
+				return this.target;
+			default:
+				Object result = ServerTimingDataSource.invoke(this.target, method, args);
+				if (result instanceof Statement) {
+					return Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+							new Class<?>[] { method.getReturnType() }, new StatementHandler((Statement) result));
+				}
+				return result;
+			}
+		}
+
+	}
+
+	/**
+	 * Adds the time spent executing a statement to the current request.
+	 */
+	private static final class StatementHandler implements InvocationHandler {
+
+		private final Statement target;
+
+		StatementHandler(Statement target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getName().equals("equals")) {
+				return proxy == args[0];
+			}
+			if (method.getName().equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+			if (!method.getName().startsWith("execute")) {
+				return ServerTimingDataSource.invoke(this.target, method, args);
+			}
+			long start = System.nanoTime();
+			try {
+				return ServerTimingDataSource.invoke(this.target, method, args);
+			}
+			finally {
+				ServerTiming timing = ServerTiming.current();
+				if (timing != null) {
+					timing.add(Metric.DB, System.nanoTime() - start);
+				}
+			}
+		}
+
+	}
+
+}
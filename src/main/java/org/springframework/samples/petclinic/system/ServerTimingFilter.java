@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Adds a <code>Server-Timing</code> header to a random sample of responses, breaking the
+ * time spent handling the request down into database, cache, controller and view time
+ * (see {@link ServerTiming}).
+ * <p>
+ * Headers cannot be added once the response is committed, so the response buffer of a
+ * sampled request is enlarged to hold the rendered page, and flushing it is held back
+ * until the header is added. Responses that outgrow the buffer, or are streamed
+ * asynchronously, go out without the header.
+ */
+class ServerTimingFilter extends OncePerRequestFilter {
+
+	static final String HEADER = "Server-Timing";
+
+	private final double sampleRate;
+
+	private final int bufferSize;
+
+	/**
+	 * Create a new filter.
+	 * @param sampleRate the fraction of requests to time, from {@code 0} (none) to
+	 * {@code 1} (all)
+	 * @param bufferSize the response buffer size of timed requests, in bytes
+	 */
+	ServerTimingFilter(double sampleRate, int bufferSize) {
+		this.sampleRate = sampleRate;
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		if (this.sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= this.sampleRate) {
+			chain.doFilter(request, response);
+			return;
+		}
+		if (!response.isCommitted() && response.getBufferSize() < this.bufferSize) {
+			response.setBufferSize(this.bufferSize);
+		}
+		long start = System.nanoTime();
+		ServerTiming timing = ServerTiming.begin();
+		DeferredFlushResponse deferred = new DeferredFlushResponse(response);
+		try {
+			chain.doFilter(request, deferred);
+		}
+		finally {
+			ServerTiming.end();
+		}
+		if (!response.isCommitted() && !request.isAsyncStarted()) {
+			response.addHeader(HEADER, timing.toHeaderValue(System.nanoTime() - start));
+		}
+		deferred.flushThrough();
+	}
+
+	/**
+	 * Ignores flushes of the response, and holds back its content length, which would
+	 * commit it as soon as the content is written, and redirects, which commit it right
+	 * away, until {@link #flushThrough()} is called.
+	 */
+	private static final class DeferredFlushResponse extends HttpServletResponseWrapper {
+
+		private volatile boolean flushing;
+
+		private long contentLength = -1;
+
+		private ServletOutputStream outputStream;
+
+		private PrintWriter writer;
+
+		DeferredFlushResponse(HttpServletResponse response) {
+			super(response);
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (this.outputStream == null) {
+				this.outputStream = new DeferredFlushOutputStream(super.getOutputStream());
+			}
+			return this.outputStream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (this.writer == null) {
+				this.writer = new PrintWriter(super.getWriter()) {
+
+					@Override
+					public void flush() {
+						if (DeferredFlushResponse.this.flushing) {
+							super.flush();
+						}
+					}
+
+				};
+			}
+			return this.writer;
+		}
+
+		@Override
+		public void setContentLength(int len) {
+			setContentLengthLong(len);
+		}
+
+		@Override
+		public void setContentLengthLong(long len) {
+			if (this.flushing) {
+				super.setContentLengthLong(len);
+			}
+			else {
+				this.contentLength = len;
+			}
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+			if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && value != null) {
+				setContentLengthLong(Long.parseLong(value));
+			}
+			else {
+				super.setHeader(name, value);
+			}
+		}
+
+		@Override
+		public void addHeader(String name, String value) {
+			if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && value != null) {
+				setContentLengthLong(Long.parseLong(value));
+			}
+			else {
+				super.addHeader(name, value);
+			}
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			if (this.flushing) {
+				super.sendRedirect(location);
+				return;
+			}
+			// what the container does, short of committing the response
+			resetBuffer();
+			setStatus(HttpServletResponse.SC_FOUND);
+			super.setHeader(HttpHeaders.LOCATION, location);
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			if (this.flushing) {
+				super.flushBuffer();
+			}
+		}
+
+		/**
+		 * Stop deferring: set the content length held back, if any, and let flushes of
+		 * asynchronously written responses pass through from then on.
+		 */
+		void flushThrough() {
+			this.flushing = true;
+			if (this.contentLength >= 0 && !isCommitted()) {
+				super.setContentLengthLong(this.contentLength);
+			}
+		}
+
+		private final class DeferredFlushOutputStream extends ServletOutputStream {
+
+			private final ServletOutputStream delegate;
+
+			DeferredFlushOutputStream(ServletOutputStream delegate) {
+				this.delegate = delegate;
+			}
+
+			@Override
+			public void write(int b) throws IOException {
+				this.delegate.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				this.delegate.write(b, off, len);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				if (DeferredFlushResponse.this.flushing) {
+					this.delegate.flush();
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				this.delegate.close();
+			}
+
+			@Override
+			public boolean isReady() {
+				return this.delegate.isReady();
+			}
+
+			@Override
+			public void setWriteListener(WriteListener listener) {
+				this.delegate.setWriteListener(listener);
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.samples.petclinic.system.ServerTiming.Metric;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+/**
+ * Times the controller handler and the rendering of its view for sampled requests: the
+ * dispatcher renders the view between {@link #postHandle} and {@link #afterCompletion}.
+ */
+class ServerTimingInterceptor implements HandlerInterceptor {
+
+	private static final String STARTED = ServerTimingInterceptor.class.getName() + ".STARTED";
+
+	private static final String RENDERING = ServerTimingInterceptor.class.getName() + ".RENDERING";
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (ServerTiming.current() != null) {
+			request.setAttribute(STARTED, System.nanoTime());
+		}
+		return true;
+	}
+
+	@Override
+	public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+			ModelAndView modelAndView) {
+		lap(request, Metric.APP);
+		if (modelAndView != null && !modelAndView.wasCleared()) {
+			request.setAttribute(RENDERING, Boolean.TRUE);
+		}
+		else {
+			// the handler wrote the response body itself
+			request.removeAttribute(STARTED);
+		}
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		// without postHandle, i.e. if the handler failed, the time is the handler's
+		lap(request, (request.getAttribute(RENDERING) != null) ? Metric.VIEW : Metric.APP);
+		request.removeAttribute(STARTED);
+	}
+
+	private static void lap(HttpServletRequest request, Metric metric) {
+		ServerTiming timing = ServerTiming.current();
+		Object started = request.getAttribute(STARTED);
+		if (timing != null && started != null) {
+			long now = System.nanoTime();
+			timing.add(metric, now - (Long) started);
+			request.setAttribute(STARTED, now);
+		}
+	}
+
+}
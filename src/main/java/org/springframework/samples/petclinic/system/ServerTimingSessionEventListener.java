@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import org.hibernate.BaseSessionEventListener;
+import org.springframework.samples.petclinic.system.ServerTiming.Metric;
+
+/**
+ * Times the flushes of a Hibernate session for sampled requests; its statements are timed
+ * by {@link ServerTimingDataSource}. Hibernate creates one instance per session, see
+ * <code>hibernate.session.events.auto</code>.
+ */
+public class ServerTimingSessionEventListener extends BaseSessionEventListener {
+
+	private long flushStart;
+
+	@Override
+	public void flushStart() {
+		this.flushStart = System.nanoTime();
+	}
+
+	@Override
+	public void flushEnd(int numberOfEntities, int numberOfCollections) {
+		add(Metric.FLUSH, this.flushStart);
+	}
+
+	private static void add(Metric metric, long start) {
+		ServerTiming timing = ServerTiming.current();
+		if (timing != null) {
+			timing.add(metric, System.nanoTime() - start);
+		}
+	}
+
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.samples.petclinic.system.ServerTiming.Metric;
+
+/**
+ * Decorates a {@link Cache} to protect the data store from cache stampedes.
+ * <p>
+ * <b>Single-flight loading:</b> when several threads miss the same key at once in
+ * {@link #get(Object, Callable)}, i.e. for <code>@Cacheable(sync = true)</code>, only the
+ * first one loads the value; the others wait for that load and then read its result.
+ * <p>
+ * <b>Probabilistic early refresh:</b> every value is stored with its expiry time and how
+ * long it took to load. A lookup reports a miss slightly before the value expires, with a
+ * probability that grows the closer the expiry and the slower the load are (the "XFetch"
+ * algorithm of Vattani et al.). The single unlucky caller then reloads the value while
+ * everyone else is still served the cached one, so popular keys are refreshed before they
+ * expire instead of all at once after.
+ * <p>
+ * Absent ({@literal null}) values can be given a shorter time to live than present ones.
+ * Reads and writes count towards the cache time of a {@link ServerTiming} sample, and
+ * lookups are recorded as a {@link CacheLookupEvent} in flight recordings.
+ */
+final class SingleFlightCache implements Cache {
+
+	private final Cache cache;
+
+	private final Duration timeToLive;
+
+	private final Duration negativeTimeToLive;
+
+	private final double beta;
+
+	private final ConcurrentMap<Object, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+
+	// the key this thread last missed and when, to measure how long loading it takes
+	private final ThreadLocal<Miss> misses = new ThreadLocal<>();
+
+	private volatile long averageLoadNanos;
+
+	private final Counter loaded;
+
+	private final Counter coalesced;
+
+	private final Counter earlyRefreshes;
+
+	/**
+	 * Create a new decorator.
+	 * @param cache the cache to decorate
+	 * @param tiers the settings of the cache, for the time to live of its values
+	 * @param beta how eagerly values are refreshed before they expire, {@code 1.0} being
+	 * the optimum of the XFetch algorithm and {@code 0} disabling early refreshes
+	 * @param registry the registry to publish load metrics to
+	 */
+	SingleFlightCache(Cache cache, CacheTierProperties.Tiers tiers, double beta, MeterRegistry registry) {
+		this.cache = cache;
+		this.timeToLive = tiers.getTimeToLive();
+		this.negativeTimeToLive = (tiers.getNegativeTimeToLive() != null) ? tiers.getNegativeTimeToLive()
+				: tiers.getTimeToLive();
+		this.beta = beta;
+		this.loaded = Counter.builder("petclinic.cache.loads").tag("cache", cache.getName()).tag("result", "loaded")
+				.description("Values loaded into the cache on a miss").register(registry);
+		this.coalesced = Counter.builder("petclinic.cache.loads").tag("cache", cache.getName())
+				.tag("result", "coalesced").description("Values loaded into the cache on a miss").register(registry);
+		this.earlyRefreshes = Counter.builder("petclinic.cache.early.refreshes").tag("cache", cache.getName())
+				.description("Lookups reported as a miss to refresh a value before it expires").register(registry);
+	}
+
+	@Override
+	public String getName() {
+		return this.cache.getName();
+	}
+
+	@Override
+	public Object getNativeCache() {
+		return this.cache.getNativeCache();
+	}
+
+	@Override
+	public ValueWrapper get(Object key) {
+		ValueWrapper wrapper = lookup(key, true);
+		if (wrapper == null) {
+			this.misses.set(new Miss(key, System.nanoTime()));
+		}
+		return wrapper;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, Class<T> type) {
+		ValueWrapper wrapper = get(key);
+		Object value = (wrapper != null) ? wrapper.get() : null;
+		if (value != null && type != null && !type.isInstance(value)) {
+			throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+		}
+		return (T) value;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, Callable<T> valueLoader) {
+		ValueWrapper wrapper = lookup(key, true);
+		if (wrapper != null) {
+			return (T) wrapper.get();
+		}
+		CompletableFuture<Object> load = new CompletableFuture<>();
+		CompletableFuture<Object> inFlight = this.loads.putIfAbsent(key, load);
+		if (inFlight != null) {
+			this.coalesced.increment();
+			Object value = await(key, valueLoader, inFlight);
+			// read it back in case the cache hands out copies
+			wrapper = lookup(key, false);
+			return (T) ((wrapper != null) ? wrapper.get() : value);
+		}
+		try {
+			long start = System.nanoTime();
+			T value = valueLoader.call();
+			write(key, entry(value, loaded(System.nanoTime() - start)));
+			load.complete(value);
+			return value;
+		}
+		catch (Throwable ex) {
+			load.completeExceptionally(ex);
+			throw new ValueRetrievalException(key, valueLoader, ex);
+		}
+		finally {
+			this.loads.remove(key, load);
+		}
+	}
+
+	@Override
+	public void put(Object key, Object value) {
+		Miss miss = this.misses.get();
+		long loadNanos = this.averageLoadNanos;
+		if (miss != null && miss.key.equals(key)) {
+			this.misses.remove();
+			loadNanos = loaded(System.nanoTime() - miss.nanos);
+		}
+		write(key, entry(value, loadNanos));
+	}
+
+	@Override
+	public ValueWrapper putIfAbsent(Object key, Object value) {
+		ValueWrapper existing = this.cache.putIfAbsent(key, entry(value, this.averageLoadNanos));
+		return (existing != null) ? unwrap(existing) : null;
+	}
+
+	@Override
+	public void evict(Object key) {
+		this.cache.evict(key);
+	}
+
+	@Override
+	public boolean evictIfPresent(Object key) {
+		return this.cache.evictIfPresent(key);
+	}
+
+	@Override
+	public void clear() {
+		this.cache.clear();
+	}
+
+	@Override
+	public boolean invalidate() {
+		return this.cache.invalidate();
+	}
+
+	/**
+	 * Look up a value, treating it as missing if it has expired or, if asked for, is due
+	 * for an early refresh.
+	 */
+	private ValueWrapper lookup(Object key, boolean refreshEarly) {
+		CacheLookupEvent event = new CacheLookupEvent();
+		event.begin();
+		ValueWrapper wrapper = read(key);
+		// a value that is not an entry was loaded by the cache itself
+		String result = CacheLookupEvent.HIT;
+		if (wrapper == null) {
+			result = CacheLookupEvent.MISS;
+		}
+		else if (wrapper.get() instanceof Entry) {
+			Entry entry = (Entry) wrapper.get();
+			long now = System.currentTimeMillis();
+			if (now >= entry.expiresAt) {
+				wrapper = null;
+				result = CacheLookupEvent.EXPIRED;
+			}
+			else if (refreshEarly && refreshEarly(entry, now)) {
+				this.earlyRefreshes.increment();
+				wrapper = null;
+				result = CacheLookupEvent.EARLY_REFRESH;
+			}
+			else {
+				wrapper = new SimpleValueWrapper(entry.value);
+			}
+		}
+		if (event.shouldCommit()) {
+			event.cache = getName();
+			event.key = String.valueOf(key);
+			event.result = result;
+			event.commit();
+		}
+		return wrapper;
+	}
+
+	private boolean refreshEarly(Entry entry, long now) {
+		if (this.beta <= 0 || entry.expiresAt == Long.MAX_VALUE) {
+			return false;
+		}
+		double gap = entry.loadNanos / 1_000_000.0 * this.beta
+				* -Math.log(1.0 - ThreadLocalRandom.current().nextDouble());
+		return now + gap >= entry.expiresAt;
+	}
+
+	private ValueWrapper read(Object key) {
+		ServerTiming timing = ServerTiming.current();
+		if (timing == null) {
+			return this.cache.get(key);
+		}
+		long start = System.nanoTime();
+		try {
+			return this.cache.get(key);
+		}
+		finally {
+			timing.add(Metric.CACHE, System.nanoTime() - start);
+		}
+	}
+
+	private void write(Object key, Entry entry) {
+		ServerTiming timing = ServerTiming.current();
+		if (timing == null) {
+			this.cache.put(key, entry);
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			this.cache.put(key, entry);
+		}
+		finally {
+			timing.add(Metric.CACHE, System.nanoTime() - start);
+		}
+	}
+
+	private Object await(Object key, Callable<?> valueLoader, CompletableFuture<Object> inFlight) {
+		try {
+			return inFlight.get();
+		}
+		catch (ExecutionException ex) {
+			throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new ValueRetrievalException(key, valueLoader, ex);
+		}
+	}
+
+	private long loaded(long loadNanos) {
+		this.loaded.increment();
+		long average = this.averageLoadNanos;
+		this.averageLoadNanos = (average == 0) ? loadNanos : average + (loadNanos - average) / 8;
+		return loadNanos;
+	}
+
+	private Entry entry(Object value, long loadNanos) {
+		Duration ttl = (value != null) ? this.timeToLive : this.negativeTimeToLive;
+		long expiresAt = (ttl != null) ? System.currentTimeMillis() + ttl.toMillis() : Long.MAX_VALUE;
+		return new Entry(value, expiresAt, loadNanos);
+	}
+
+	private static ValueWrapper unwrap(ValueWrapper wrapper) {
+		return (wrapper.get() instanceof Entry) ? new SimpleValueWrapper(((Entry) wrapper.get()).value) : wrapper;
+	}
+
+	/**
+	 * A cached value with its expiry time and how long it took to load.
+	 */
+	static final class Entry implements Serializable {
+
+		private final Object value;
+
+		private final long expiresAt;
+
+		private final long loadNanos;
+
+		Entry(Object value, long expiresAt, long loadNanos) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+			this.loadNanos = loadNanos;
+		}
+
+	}
+
+	private static final class Miss {
+
+		private final Object key;
+
+		private final long nanos;
+
+		Miss(Object key, long nanos) {
+			this.key = key;
+			this.nanos = nanos;
+		}
+
+	}
+
+}
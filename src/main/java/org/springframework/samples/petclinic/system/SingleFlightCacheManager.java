@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+/**
+ * Decorates every cache of a {@link CacheManager} with a {@link SingleFlightCache}.
+ */
+final class SingleFlightCacheManager implements CacheManager {
+
+	private final CacheManager cacheManager;
+
+	private final CacheTierProperties properties;
+
+	private final ObjectProvider<MeterRegistry> registry;
+
+	private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+	SingleFlightCacheManager(CacheManager cacheManager, CacheTierProperties properties,
+			ObjectProvider<MeterRegistry> registry) {
+		this.cacheManager = cacheManager;
+		this.properties = properties;
+		this.registry = registry;
+	}
+
+	@Override
+	public Cache getCache(String name) {
+		Cache cache = this.caches.get(name);
+		if (cache == null) {
+			Cache target = this.cacheManager.getCache(name);
+			if (target == null) {
+				return null;
+			}
+			cache = this.caches.computeIfAbsent(name,
+					key -> new SingleFlightCache(target, this.properties.getCache(name),
+							this.properties.getCacheEarlyRefreshBeta(),
+							this.registry.getIfAvailable(() -> Metrics.globalRegistry)));
+		}
+		return cache;
+	}
+
+	@Override
+	public Collection<String> getCacheNames() {
+		return this.cacheManager.getCacheNames();
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.view.UrlBasedViewResolver;
+
+/**
+ * Records a {@link TemplateRenderingEvent} for every rendered view template while a
+ * flight recording including the event is running: the dispatcher renders the view
+ * between {@link #postHandle} and {@link #afterCompletion}.
+ */
+class TemplateRenderingInterceptor implements HandlerInterceptor {
+
+	private static final String EVENT = TemplateRenderingInterceptor.class.getName() + ".EVENT";
+
+	@Override
+	public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+			ModelAndView modelAndView) {
+		if (modelAndView == null || modelAndView.getViewName() == null
+				|| modelAndView.getViewName().startsWith(UrlBasedViewResolver.REDIRECT_URL_PREFIX)
+				|| modelAndView.getViewName().startsWith(UrlBasedViewResolver.FORWARD_URL_PREFIX)) {
+			return;
+		}
+		TemplateRenderingEvent event = new TemplateRenderingEvent();
+		if (event.isEnabled()) {
+			event.template = modelAndView.getViewName();
+			event.begin();
+			request.setAttribute(EVENT, event);
+		}
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		TemplateRenderingEvent event = (TemplateRenderingEvent) request.getAttribute(EVENT);
+		if (event != null) {
+			request.removeAttribute(EVENT);
+			event.commit();
+		}
+	}
+
+}
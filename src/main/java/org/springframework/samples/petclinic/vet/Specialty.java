@@ -15,9 +15,13 @@
  */
 package org.springframework.samples.petclinic.vet;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import org.springframework.samples.petclinic.model.NamedEntity;
 
 /**
@@ -27,6 +31,8 @@ import org.springframework.samples.petclinic.model.NamedEntity;
  */
 @Entity
 @Table(name = "specialties")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "specialties")
 public class Specialty extends NamedEntity {
 
 }
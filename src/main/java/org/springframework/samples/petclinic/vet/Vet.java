@@ -17,20 +17,25 @@ package org.springframework.samples.petclinic.vet;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import javax.xml.bind.annotation.XmlElement;
 
-import org.springframework.beans.support.MutableSortDefinition;
-import org.springframework.beans.support.PropertyComparator;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import org.springframework.samples.petclinic.model.NamedEntity;
 import org.springframework.samples.petclinic.model.Person;
 
 /**
@@ -43,13 +48,23 @@ import org.springframework.samples.petclinic.model.Person;
  */
 @Entity
 @Table(name = "vets")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "vetEntities")
 public class Vet extends Person {
 
+	private static final Comparator<NamedEntity> BY_NAME = Comparator.comparing(NamedEntity::getName,
+			Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+
 	@ManyToMany(fetch = FetchType.EAGER)
 	@JoinTable(name = "vet_specialties", joinColumns = @JoinColumn(name = "vet_id"),
 			inverseJoinColumns = @JoinColumn(name = "specialty_id"))
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "vetSpecialties")
 	private Set<Specialty> specialties;
 
+	// sorted once and for all on the copies served by the VetDirectory
+	@Transient
+	private List<Specialty> sortedSpecialties;
+
 	protected Set<Specialty> getSpecialtiesInternal() {
 		if (this.specialties == null) {
 			this.specialties = new HashSet<>();
@@ -63,8 +78,11 @@ public class Vet extends Person {
 
 	@XmlElement
 	public List<Specialty> getSpecialties() {
+		if (this.sortedSpecialties != null) {
+			return this.sortedSpecialties;
+		}
 		List<Specialty> sortedSpecs = new ArrayList<>(getSpecialtiesInternal());
-		PropertyComparator.sort(sortedSpecs, new MutableSortDefinition("name", true, true));
+		sortedSpecs.sort(BY_NAME);
 		return Collections.unmodifiableList(sortedSpecs);
 	}
 
@@ -76,4 +94,19 @@ public class Vet extends Person {
 		getSpecialtiesInternal().add(specialty);
 	}
 
+	/**
+	 * Return a detached copy of this vet whose specialties are sorted once, rather than
+	 * on every call of {@link #getSpecialties()}. The copy's specialties cannot be
+	 * changed.
+	 */
+	Vet immutableCopy() {
+		Vet copy = new Vet();
+		copy.setId(getId());
+		copy.setFirstName(getFirstName());
+		copy.setLastName(getLastName());
+		copy.specialties = Collections.unmodifiableSet(new HashSet<>(getSpecialtiesInternal()));
+		copy.sortedSpecialties = getSpecialties();
+		return copy;
+	}
+
 }
@@ -15,14 +15,22 @@
  */
 package org.springframework.samples.petclinic.vet;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
@@ -35,10 +43,16 @@ import org.springframework.web.bind.annotation.ResponseBody;
 @Controller
 class VetController {
 
+	private static final List<MediaType> DIRECTORY_TYPES = Collections
+			.unmodifiableList(Arrays.asList(MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_XML));
+
 	private final VetRepository vets;
 
-	public VetController(VetRepository clinicService) {
+	private final VetDirectory directory;
+
+	public VetController(VetRepository clinicService, VetDirectory directory) {
 		this.vets = clinicService;
+		this.directory = directory;
 	}
 
 	@GetMapping("/vets.html")
@@ -64,16 +78,47 @@ class VetController {
 	private Page<Vet> findPaginated(int page) {
 		int pageSize = 5;
 		Pageable pageable = PageRequest.of(page - 1, pageSize);
-		return vets.findAll(pageable);
+		return this.directory.findPage(pageable);
 	}
 
 	@GetMapping({ "/vets" })
-	public @ResponseBody Vets showResourcesVetList() {
-		// Here we are returning an object of type 'Vets' rather than a collection of Vet
-		// objects so it is simpler for JSon/Object mapping
+	public ResponseEntity<byte[]> showResourcesVetList(
+			@RequestHeader(name = HttpHeaders.ACCEPT, defaultValue = MediaType.ALL_VALUE) String accept)
+			throws HttpMediaTypeNotAcceptableException {
+		// The whole directory is serialized once per snapshot; conditional requests
+		// matching the ETag are answered with 304 Not Modified
+		MediaType mediaType = negotiate(accept);
+		VetDirectory.Payload payload = MediaType.APPLICATION_JSON.equals(mediaType) ? this.directory.getJson()
+				: this.directory.getXml();
+		return ResponseEntity.ok().contentType(mediaType).eTag(payload.getEtag()).varyBy(HttpHeaders.ACCEPT)
+				.body(payload.getContent());
+	}
+
+	@GetMapping(path = "/vets", params = "specialty")
+	public @ResponseBody Vets showResourcesVetList(@RequestParam List<String> specialty) {
 		Vets vets = new Vets();
-		vets.getVetList().addAll(this.vets.findAll());
+		vets.getVetList().addAll(this.directory.findBySpecialties(specialty));
 		return vets;
 	}
 
+	private static MediaType negotiate(String accept) throws HttpMediaTypeNotAcceptableException {
+		List<MediaType> acceptable;
+		try {
+			acceptable = MediaType.parseMediaTypes(accept);
+		}
+		catch (InvalidMediaTypeException ex) {
+			throw new HttpMediaTypeNotAcceptableException(
+					"Could not parse 'Accept' header [" + accept + "]: " + ex.getMessage());
+		}
+		MediaType.sortBySpecificityAndQuality(acceptable);
+		for (MediaType requested : acceptable) {
+			for (MediaType type : DIRECTORY_TYPES) {
+				if (requested.includes(type)) {
+					return type;
+				}
+			}
+		}
+		throw new HttpMediaTypeNotAcceptableException(DIRECTORY_TYPES);
+	}
+
 }
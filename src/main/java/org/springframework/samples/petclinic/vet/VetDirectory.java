@@ -0,0 +1,283 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Immutable snapshot of all {@link Vet}s, serving the vet directory without touching the
+ * database or re-serializing it.
+ * <p>
+ * A snapshot holds immutable copies of the vets with their specialties sorted once (see
+ * {@link Vet#immutableCopy()}), from which the pages of the vet list are cut and the vets
+ * with given specialties are picked; a bitmask of each vet's specialties to find those
+ * quickly; and the complete directory already serialized as JSON and XML together with a
+ * strong ETag for each. Serving the directory is then a matter of writing out bytes, and
+ * conditional requests are answered without writing anything.
+ * <p>
+ * The snapshot is built from the vet list cached by {@link VetRepository#findAll()} and
+ * reads through that cache on every access: when the cache hands out a different list,
+ * because the cached one expired or was refreshed, a new snapshot is built from it and
+ * swapped in with a single volatile write. The expiry and refresh of the "vets" cache
+ * thus decide how current the directory is, and {@link #refresh()} forces a reload when
+ * vets or their specialties change. With caching disabled, every access reloads the vets.
+ */
+@Component
+public class VetDirectory {
+
+	private final VetRepository vets;
+
+	private final ObjectMapper objectMapper;
+
+	private final JAXBContext jaxbContext;
+
+	private volatile Snapshot snapshot;
+
+	public VetDirectory(VetRepository vets, ObjectMapper objectMapper) {
+		this.vets = vets;
+		this.objectMapper = objectMapper;
+		try {
+			this.jaxbContext = JAXBContext.newInstance(Vets.class);
+		}
+		catch (JAXBException ex) {
+			throw new IllegalStateException("Cannot create JAXB context for vets", ex);
+		}
+	}
+
+	/**
+	 * (Re)load the vets from the data store, evicting the cached vet list. Must be called
+	 * through the Spring proxy for the eviction to happen.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@CacheEvict(cacheNames = "vets", allEntries = true, beforeInvocation = true)
+	public void refresh() {
+		snapshot();
+	}
+
+	/**
+	 * Return all vets. They are shared by every reader and must not be modified.
+	 */
+	public List<Vet> getVets() {
+		return snapshot().vets;
+	}
+
+	/**
+	 * Return a page of all vets.
+	 * @param pageable the page to return, must be paged
+	 * @return the page, empty if beyond the last vet
+	 */
+	public Page<Vet> findPage(Pageable pageable) {
+		List<Vet> all = snapshot().vets;
+		int from = (int) Math.min(pageable.getOffset(), all.size());
+		int to = Math.min(from + pageable.getPageSize(), all.size());
+		return new PageImpl<>(all.subList(from, to), pageable, all.size());
+	}
+
+	/**
+	 * Return the vets having all the given specialties.
+	 * @param specialtyNames names of the required specialties
+	 * @return the matching vets, none if a specialty does not exist
+	 */
+	public List<Vet> findBySpecialties(Collection<String> specialtyNames) {
+		return snapshot().findBySpecialties(specialtyNames);
+	}
+
+	/**
+	 * Return the whole directory serialized as JSON.
+	 */
+	public Payload getJson() {
+		return snapshot().json;
+	}
+
+	/**
+	 * Return the whole directory serialized as XML.
+	 */
+	public Payload getXml() {
+		return snapshot().xml;
+	}
+
+	private Snapshot snapshot() {
+		// a cache hit, except after the cached list expired or was evicted
+		Collection<Vet> all = this.vets.findAll();
+		Snapshot current = this.snapshot;
+		if (current == null || current.source != all) {
+			synchronized (this) {
+				current = this.snapshot;
+				if (current == null || current.source != all) {
+					current = new Snapshot(all);
+					this.snapshot = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	private byte[] toJson(Vets vets) {
+		try {
+			return this.objectMapper.writeValueAsBytes(vets);
+		}
+		catch (JsonProcessingException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private byte[] toXml(Vets vets) {
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		try {
+			Marshaller marshaller = this.jaxbContext.createMarshaller();
+			marshaller.marshal(vets, xml);
+		}
+		catch (JAXBException ex) {
+			throw new IllegalStateException("Cannot serialize vets to XML", ex);
+		}
+		return xml.toByteArray();
+	}
+
+	/**
+	 * A serialized representation of the directory.
+	 */
+	public static final class Payload {
+
+		private final byte[] content;
+
+		private final String etag;
+
+		Payload(byte[] content) {
+			this.content = content;
+			this.etag = "\"" + DigestUtils.md5DigestAsHex(content) + "\"";
+		}
+
+		/**
+		 * Return the serialized directory. The array is shared and must not be modified.
+		 */
+		public byte[] getContent() {
+			return this.content;
+		}
+
+		/**
+		 * Return the strong ETag of the content, including its quotes.
+		 */
+		public String getEtag() {
+			return this.etag;
+		}
+
+	}
+
+	private final class Snapshot {
+
+		// the cached vet list this snapshot was built from
+		private final Collection<Vet> source;
+
+		private final List<Vet> vets;
+
+		// bit i of specialties[v] is set if vets[v] has the specialty at index i
+		private final Map<String, Integer> specialtyIndexes = new HashMap<>();
+
+		private final long[][] specialties;
+
+		private final Payload json;
+
+		private final Payload xml;
+
+		Snapshot(Collection<Vet> vets) {
+			this.source = vets;
+			List<Vet> copies = new ArrayList<>(vets.size());
+			for (Vet vet : vets) {
+				copies.add(vet.immutableCopy());
+			}
+			this.vets = Collections.unmodifiableList(copies);
+			this.specialties = new long[this.vets.size()][];
+			for (int v = 0; v < this.vets.size(); v++) {
+				this.specialties[v] = mask(this.vets.get(v).getSpecialties());
+			}
+			Vets directory = new Vets();
+			directory.getVetList().addAll(this.vets);
+			this.json = new Payload(toJson(directory));
+			this.xml = new Payload(toXml(directory));
+		}
+
+		List<Vet> findBySpecialties(Collection<String> specialtyNames) {
+			long[] required = new long[0];
+			for (String name : specialtyNames) {
+				Integer index = this.specialtyIndexes.get(name);
+				if (index == null) {
+					return Collections.emptyList();
+				}
+				required = set(required, index);
+			}
+			List<Vet> matches = new ArrayList<>();
+			for (int v = 0; v < this.vets.size(); v++) {
+				if (containsAll(this.specialties[v], required)) {
+					matches.add(this.vets.get(v));
+				}
+			}
+			return matches;
+		}
+
+		private long[] mask(List<Specialty> specialties) {
+			long[] mask = new long[0];
+			for (Specialty specialty : specialties) {
+				Integer index = this.specialtyIndexes.computeIfAbsent(specialty.getName(),
+						name -> this.specialtyIndexes.size());
+				mask = set(mask, index);
+			}
+			return mask;
+		}
+
+		private long[] set(long[] mask, int index) {
+			int word = index >>> 6;
+			long[] result = (word < mask.length) ? mask : Arrays.copyOf(mask, word + 1);
+			result[word] |= 1L << index;
+			return result;
+		}
+
+		private boolean containsAll(long[] mask, long[] required) {
+			for (int word = 0; word < required.length; word++) {
+				long bits = (word < mask.length) ? mask[word] : 0;
+				if ((bits & required[word]) != required[word]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+}
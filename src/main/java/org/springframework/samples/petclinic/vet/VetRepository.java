@@ -19,6 +19,7 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -38,23 +39,33 @@ import java.util.Collection;
 public interface VetRepository extends Repository<Vet, Integer> {
 
 	/**
-	 * Retrieve all <code>Vet</code>s from the data store.
+	 * Retrieve all <code>Vet</code>s from the data store. The result is cached as a
+	 * single entry, which {@link VetDirectory} reads through; see
+	 * {@link VetDirectory#refresh()} for evicting it.
 	 * @return a <code>Collection</code> of <code>Vet</code>s
 	 */
 	@Transactional(readOnly = true)
-	@Cacheable("vets")
+	@Cacheable(cacheNames = "vets", key = "'all'", sync = true)
 	Collection<Vet> findAll() throws DataAccessException;
 
 	/**
-	 * Retrieve all <code>Vet</code>s from data store in Pages
+	 * Retrieve all <code>Vet</code>s from data store in Pages. Not cached; the vet list
+	 * pages are cut from the cached full list by {@link VetDirectory#findPage(Pageable)}.
 	 * @param pageable
 	 * @return
 	 * @throws DataAccessException
 	 */
 	@Transactional(readOnly = true)
-	@Cacheable("vets")
 	Page<Vet> findAll(Pageable pageable) throws DataAccessException;
 
+	/**
+	 * Retrieve all <code>Specialty</code>s from the data store.
+	 * @return a <code>Collection</code> of <code>Specialty</code>s
+	 */
+	@Query("SELECT specialty FROM Specialty specialty ORDER BY specialty.name")
+	@Transactional(readOnly = true)
+	Collection<Specialty> findSpecialties() throws DataAccessException;
+
 	;
 
 }
@@ -18,19 +18,49 @@ package org.springframework.samples.petclinic;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.ehcache.config.CacheRuntimeConfiguration;
+import org.ehcache.config.ResourceType;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.owner.Visit;
 import org.springframework.samples.petclinic.vet.VetRepository;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
-@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "management.endpoints.web.exposure.exclude=")
+@AutoConfigureMetrics
 class PetClinicIntegrationTests {
 
 	@LocalServerPort
@@ -39,13 +69,91 @@ class PetClinicIntegrationTests {
 	@Autowired
 	private VetRepository vets;
 
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private javax.cache.CacheManager jcacheManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
 	@Autowired
 	private RestTemplateBuilder builder;
 
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
 	@Test
 	void testFindAll() throws Exception {
 		vets.findAll();
 		vets.findAll(); // served from cache
+		assertThat(cacheManager.getCache("vets").get("all")).isNotNull();
+	}
+
+	@Test
+	void testCacheTiers() {
+		CacheRuntimeConfiguration<Object, Object> owners = cacheConfiguration("owners");
+		assertThat(owners.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getSize()).isEqualTo(1000);
+		assertThat(owners.getResourcePools().getPoolForResource(ResourceType.Core.OFFHEAP).getSize())
+				.isEqualTo(32 * 1024 * 1024);
+		assertThat(owners.getExpiryPolicy().getExpiryForCreation(1, null)).isEqualTo(Duration.ofMinutes(10));
+	}
+
+	@SuppressWarnings("unchecked")
+	private CacheRuntimeConfiguration<Object, Object> cacheConfiguration(String name) {
+		Eh107Configuration<Object, Object> configuration = jcacheManager.getCache(name)
+				.getConfiguration(Eh107Configuration.class);
+		return configuration.unwrap(CacheRuntimeConfiguration.class);
+	}
+
+	@Test
+	void testFlightRecording() throws Exception {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		ResponseEntity<Map> started = template.exchange(RequestEntity.post("/actuator/flightrecorder")
+				.contentType(MediaType.APPLICATION_JSON).body(Collections.singletonMap("settings", "default")),
+				Map.class);
+		assertThat(started.getBody().get("state")).isEqualTo("RUNNING");
+		assertThat(started.getBody().get("maxAge")).isNotNull();
+		assertThat(((Number) started.getBody().get("maxSize")).longValue()).isPositive();
+		Number id = (Number) started.getBody().get("id");
+		template.exchange(RequestEntity.get("/owners/1").build(), String.class);
+		template.exchange(RequestEntity.get("/owners?lastName=Davis").build(), String.class);
+
+		byte[] dump = template.exchange(RequestEntity.get("/actuator/flightrecorder/" + id).build(), byte[].class)
+				.getBody();
+		Path file = Files.createTempFile("petclinic-", ".jfr");
+		try {
+			Files.write(file, dump);
+			assertThat(RecordingFile.readAllEvents(file).stream().map(event -> event.getEventType().getName()))
+					.contains("org.springframework.samples.petclinic.RepositoryCall",
+							"org.springframework.samples.petclinic.CacheLookup",
+							"org.springframework.samples.petclinic.TemplateRendering")
+					.doesNotContain("jdk.InitialSystemProperty", "jdk.InitialEnvironmentVariable");
+		}
+		finally {
+			Files.delete(file);
+		}
+
+		template.exchange(RequestEntity.delete("/actuator/flightrecorder/" + id).build(), Map.class);
+		assertThat(template.exchange(RequestEntity.get("/actuator/flightrecorder").build(), List.class).getBody())
+				.noneMatch(recording -> id.equals(((Map<?, ?>) recording).get("id")));
+	}
+
+	@Test
+	void testPrometheus() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		template.exchange(RequestEntity.get("/owners/1").build(), String.class);
+		ResponseEntity<String> result = template.exchange(RequestEntity.get("/actuator/prometheus").build(),
+				String.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getBody()).contains("http_server_requests_seconds_bucket{")
+				.contains("spring_data_repository_invocations_seconds_bucket{")
+				.contains("repository=\"OwnerRepository\"").contains("hikaricp_connections_acquire_seconds_bucket{")
+				.contains("cache_gets_total{cache=\"owners\"").contains("cache_gets_total{cache=\"ownerPets\"");
 	}
 
 	@Test
@@ -55,4 +163,168 @@ class PetClinicIntegrationTests {
 		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
 	}
 
+	@Test
+	void testOwnerCache() {
+		Owner owner = owners.findById(10);
+		assertThat(cacheManager.getCache("owners").get(10)).isNotNull();
+		String telephone = owner.getTelephone();
+
+		// hits are copies, modifying them does not touch the cache
+		owners.findById(10).setTelephone("0");
+		assertThat(owners.findById(10).getTelephone()).isEqualTo(telephone);
+
+		// saving writes through
+		owner.setTelephone("6085550000");
+		owners.save(owner);
+		assertThat(cacheManager.getCache("owners").get(10, Owner.class).getTelephone()).isEqualTo("6085550000");
+		owner.setTelephone(telephone);
+		owners.save(owner);
+
+		assertThat(owners.findById(9999)).isNull();
+		assertThat(cacheManager.getCache("owners").get(9999)).isNotNull();
+		assertThat(cacheManager.getCache("owners").get(9999).get()).isNull();
+	}
+
+	@Test
+	void testUpdatePetOfCachedOwner() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		template.exchange(RequestEntity.get("/owners/10").build(), String.class);
+		MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+		form.add("name", "Sly");
+		form.add("birthDate", "2012-06-09");
+		form.add("type", "cat");
+		ResponseEntity<String> result = template.exchange(RequestEntity.post("/owners/10/pets/13/edit")
+				.contentType(MediaType.APPLICATION_FORM_URLENCODED).body(form), String.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.FOUND);
+		assertThat(owners.findById(10).getPet(13).getBirthDate()).isEqualTo(LocalDate.of(2012, 6, 9));
+	}
+
+	@Test
+	void testAddVisitToCachedOwner() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		template.exchange(RequestEntity.get("/owners/8").build(), String.class);
+		MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+		form.add("date", "2013-02-01");
+		form.add("description", "dental cleaning");
+		ResponseEntity<String> result = template.exchange(RequestEntity.post("/owners/8/pets/10/visits/new")
+				.contentType(MediaType.APPLICATION_FORM_URLENCODED).body(form), String.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.FOUND);
+		result = template.exchange(RequestEntity.get("/owners/8").build(), String.class);
+		assertThat(result.getBody()).contains("dental cleaning");
+	}
+
+	@Test
+	void testImportVisits() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		ResponseEntity<String> result = template.exchange(RequestEntity.post("/visits/import")
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.body("{\"petId\": 1, \"description\": \"checkup\"}\n"
+						+ "{\"petId\": 1, \"description\": \"\"}\n{\"petId\": 999, \"description\": \"shots\"}\n"),
+				String.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getBody()).contains("\"imported\":1").contains("\"failed\":2")
+				.contains("petId 999 does not exist");
+
+		result = template.exchange(RequestEntity.post("/visits/import").contentType(MediaType.valueOf("text/csv"))
+				.body("petId,date,description\n1,2013-02-01,\"shots, and a checkup\"\n"), String.class);
+		assertThat(result.getBody()).contains("\"imported\":1");
+		assertThat(owners.findById(1).getPet(1).getVisits()).extracting(Visit::getDescription).contains("checkup",
+				"shots, and a checkup");
+	}
+
+	@Test
+	void testImportOwners() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		// the next owner ids are cached as not found, owner 1 as found
+		int nextId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM owners", Integer.class) + 1;
+		for (int id = nextId; id < nextId + 10; id++) {
+			assertThat(owners.findById(id)).isNull();
+		}
+		owners.findById(1);
+		ResponseEntity<String> result = template
+				.exchange(RequestEntity.post("/owners/import").contentType(MediaType.valueOf("text/csv"))
+						.body("firstName,lastName,address,city,telephone,petName,petBirthDate,petType\n"
+								+ "Ada,Importson,1 Main St.,Madison,6085551000,Byte,2020-01-02,cat\n"
+								+ "Ada,Importson,1 Main St.,Madison,6085551000,Nibble,2021-03-04,hamster\n"
+								+ "Bob,Importson,2 Main St.,Madison,6085551001,,,\n"
+								+ "Eve,Importson,3 Main St.,Madison,6085551002,Rex,2020-01-02,dinosaur\n"
+								+ "Mal,Importson,4 Main St.,Madison,not a number,,,\n"),
+						String.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getBody()).contains("\"imported\":2").contains("\"failed\":2")
+				.contains("petType 'dinosaur' does not exist").contains("\"line\":6");
+
+		result = template.exchange(RequestEntity.get("/owners/autocomplete?lastName=importson").build(), String.class);
+		assertThat(result.getBody()).isEqualTo("[\"Importson\"]");
+		Owner ada = owners.findByLastName("Importson", Pageable.unpaged()).stream()
+				.filter(owner -> owner.getFirstName().equals("Ada")).findFirst().get();
+		assertThat(ada.getPets()).extracting(Pet::getName).containsExactly("Byte", "Nibble");
+		assertThat(owners.findById(ada.getId())).isNotNull();
+		assertThat(cacheManager.getCache("owners").get(1)).isNotNull();
+
+		result = template.exchange(RequestEntity.get("/owners?lastName=Imprtson&fuzzy=true").build(), String.class);
+		assertThat(result.getBody()).contains("Ada Importson");
+	}
+
+	@Test
+	void testExportOwners() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		ResponseEntity<String> result = template.exchange(
+				RequestEntity.get("/owners/export").accept(MediaType.APPLICATION_NDJSON).build(), String.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		String[] lines = result.getBody().split("\n");
+		assertThat(lines.length).isGreaterThanOrEqualTo(10);
+		assertThat(lines[0]).startsWith("{\"id\":1,\"firstName\":\"George\",\"lastName\":\"Franklin\"")
+				.contains("{\"id\":1,\"name\":\"Leo\",\"birthDate\":\"2010-09-07\",\"type\":\"cat\",\"visits\":[");
+		assertThat(lines).allMatch(line -> line.startsWith("{\"id\":"));
+		assertThat(lines[5]).contains("\"name\":\"Samantha\"").contains("\"description\":\"rabies shot\"");
+
+		result = template.exchange(RequestEntity.get("/owners/export").accept(MediaType.valueOf("text/csv")).build(),
+				String.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getBody()).startsWith("ownerId,firstName,lastName,")
+				.contains("\r\n1,George,Franklin,110 W. Liberty St.,Madison,6085551023,1,Leo,2010-09-07,cat,");
+	}
+
+	@Test
+	void testOwnersList() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		ResponseEntity<String> result = template.exchange(RequestEntity.get("/owners?lastName=").build(), String.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getBody()).contains("Max, Samantha").contains("cursor=");
+	}
+
+	@Test
+	void testOwnerAutocomplete() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		ResponseEntity<String> result = template.exchange(RequestEntity.get("/owners/autocomplete?lastName=es").build(),
+				String.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getBody()).isEqualTo("[\"Escobito\",\"Estaban\"]");
+	}
+
+	@Test
+	void testSecondLevelCache() {
+		CacheRegionStatistics petTypes = entityManagerFactory.unwrap(SessionFactory.class).getStatistics()
+				.getDomainDataRegionStatistics("petTypes");
+		long hits = petTypes.getHitCount();
+		for (int i = 0; i < 2; i++) {
+			EntityManager entityManager = entityManagerFactory.createEntityManager();
+			try {
+				assertThat(entityManager.find(PetType.class, 1).getName()).isEqualTo("cat");
+			}
+			finally {
+				entityManager.close();
+			}
+		}
+		assertThat(petTypes.getHitCount()).isGreaterThan(hits);
+
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		ResponseEntity<String> result = template.exchange(RequestEntity
+				.get("/actuator/metrics/hibernate.second.level.cache.requests?tag=region:petTypes").build(),
+				String.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getBody()).contains("\"result\"");
+	}
+
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link CsvParser}
+ */
+class CsvParserTests {
+
+	@Test
+	void shouldSplitOnCommas() {
+		assertThat(CsvParser.parseLine("7,2013-01-01,rabies shot")).containsExactly("7", "2013-01-01", "rabies shot");
+	}
+
+	@Test
+	void shouldKeepEmptyFields() {
+		assertThat(CsvParser.parseLine("7,,")).containsExactly("7", "", "");
+	}
+
+	@Test
+	void shouldUnquoteFields() {
+		assertThat(CsvParser.parseLine("7,\"shots, and \"\"more\"\"\",x")).containsExactly("7", "shots, and \"more\"",
+				"x");
+	}
+
+	@Test
+	void shouldRejectUnterminatedQuote() {
+		assertThatIllegalArgumentException().isThrownBy(() -> CsvParser.parseLine("7,\"shots"));
+	}
+
+	@Test
+	void shouldQuoteWrittenFieldsOnlyWhenNeeded() throws IOException {
+		StringWriter writer = new StringWriter();
+		CsvParser.writeField(writer, "rabies shot");
+		writer.write(',');
+		CsvParser.writeField(writer, "shots, and \"more\"");
+		assertThat(writer.toString()).isEqualTo("rabies shot,\"shots, and \"\"more\"\"\"");
+		assertThat(CsvParser.parseLine(writer.toString())).containsExactly("rabies shot", "shots, and \"more\"");
+	}
+
+}
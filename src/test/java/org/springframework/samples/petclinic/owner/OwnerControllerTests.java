@@ -18,14 +18,21 @@ package org.springframework.samples.petclinic.owner;
 
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
@@ -42,9 +49,13 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 /**
@@ -53,6 +64,7 @@ import org.springframework.test.web.servlet.MockMvc;
  * @author Colin But
  */
 @WebMvcTest(OwnerController.class)
+@Import(OwnerIdentityMap.class)
 class OwnerControllerTests {
 
 	private static final int TEST_OWNER_ID = 1;
@@ -63,6 +75,12 @@ class OwnerControllerTests {
 	@MockBean
 	private OwnerRepository owners;
 
+	@MockBean
+	private OwnerNameIndex ownerNames;
+
+	@MockBean
+	private OwnerTrigramIndex similarNames;
+
 	private Owner george() {
 		Owner george = new Owner();
 		george.setId(TEST_OWNER_ID);
@@ -82,12 +100,17 @@ class OwnerControllerTests {
 		return george;
 	};
 
+	private OwnerSummary summary(Owner owner) {
+		return new OwnerSummary(owner.getId(), owner.getFirstName(), owner.getLastName(), owner.getAddress(),
+				owner.getCity(), owner.getTelephone());
+	}
+
 	@BeforeEach
 	void setup() {
 
 		Owner george = george();
-		given(this.owners.findByLastName(eq("Franklin"), any(Pageable.class)))
-				.willReturn(new PageImpl<Owner>(Lists.newArrayList(george)));
+		given(this.owners.findSummariesByLastName(eq("Franklin"), any(Pageable.class)))
+				.willReturn(new PageImpl<OwnerSummary>(Lists.newArrayList(summary(george))));
 
 		given(this.owners.findAll(any(Pageable.class))).willReturn(new PageImpl<Owner>(Lists.newArrayList(george)));
 
@@ -111,6 +134,23 @@ class OwnerControllerTests {
 				.andExpect(status().is3xxRedirection());
 	}
 
+	@Test
+	void testProcessCreationFormIndexesLastName() throws Exception {
+		mockMvc.perform(post("/owners/new").param("firstName", "Joe").param("lastName", "Bloggs")
+				.param("address", "123 Caramel Street").param("city", "London").param("telephone", "01316761638"))
+				.andExpect(status().is3xxRedirection());
+		verify(this.ownerNames).update(any(), eq("Bloggs"));
+	}
+
+	@Test
+	void testAutocompleteLastName() throws Exception {
+		given(this.ownerNames.complete("fr", 10)).willReturn(Lists.newArrayList("Franklin"));
+		mockMvc.perform(get("/owners/autocomplete").param("lastName", "fr")).andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$[0]").value("Franklin"));
+		verify(this.owners, never()).findSummariesByLastName(anyString(), any(Pageable.class));
+	}
+
 	@Test
 	void testProcessCreationFormHasErrors() throws Exception {
 		mockMvc.perform(
@@ -129,23 +169,24 @@ class OwnerControllerTests {
 
 	@Test
 	void testProcessFindFormSuccess() throws Exception {
-		Page<Owner> tasks = new PageImpl<Owner>(Lists.newArrayList(george(), new Owner()));
-		Mockito.when(this.owners.findByLastName(anyString(), any(Pageable.class))).thenReturn(tasks);
+		Page<OwnerSummary> tasks = new PageImpl<OwnerSummary>(
+				Lists.newArrayList(summary(george()), summary(new Owner())));
+		Mockito.when(this.owners.findSummariesByLastName(anyString(), any(Pageable.class))).thenReturn(tasks);
 		mockMvc.perform(get("/owners?page=1")).andExpect(status().isOk()).andExpect(view().name("owners/ownersList"));
 	}
 
 	@Test
 	void testProcessFindFormByLastName() throws Exception {
-		Page<Owner> tasks = new PageImpl<Owner>(Lists.newArrayList(george()));
-		Mockito.when(this.owners.findByLastName(eq("Franklin"), any(Pageable.class))).thenReturn(tasks);
+		Page<OwnerSummary> tasks = new PageImpl<OwnerSummary>(Lists.newArrayList(summary(george())));
+		Mockito.when(this.owners.findSummariesByLastName(eq("Franklin"), any(Pageable.class))).thenReturn(tasks);
 		mockMvc.perform(get("/owners?page=1").param("lastName", "Franklin")).andExpect(status().is3xxRedirection())
 				.andExpect(view().name("redirect:/owners/" + TEST_OWNER_ID));
 	}
 
 	@Test
 	void testProcessFindFormNoOwnersFound() throws Exception {
-		Page<Owner> tasks = new PageImpl<Owner>(Lists.newArrayList());
-		Mockito.when(this.owners.findByLastName(eq("Unknown Surname"), any(Pageable.class))).thenReturn(tasks);
+		Page<OwnerSummary> tasks = new PageImpl<OwnerSummary>(Lists.newArrayList());
+		Mockito.when(this.owners.findSummariesByLastName(eq("Unknown Surname"), any(Pageable.class))).thenReturn(tasks);
 		mockMvc.perform(get("/owners?page=1").param("lastName", "Unknown Surname")).andExpect(status().isOk())
 				.andExpect(model().attributeHasFieldErrors("owner", "lastName"))
 				.andExpect(model().attributeHasFieldErrorCode("owner", "lastName", "notFound"))
@@ -153,6 +194,67 @@ class OwnerControllerTests {
 
 	}
 
+	@Test
+	void testProcessFindFormPageBeyondLastShowsLastPage() throws Exception {
+		given(this.owners.findSummariesByLastName(eq("Davis"), eq(PageRequest.of(998, 5))))
+				.willReturn(new PageImpl<OwnerSummary>(Lists.newArrayList(), PageRequest.of(998, 5), 7));
+		given(this.owners.findSummariesByLastName(eq("Davis"), eq(PageRequest.of(1, 5))))
+				.willReturn(new PageImpl<OwnerSummary>(Lists.newArrayList(summary(george()), summary(george())),
+						PageRequest.of(1, 5), 7));
+		mockMvc.perform(get("/owners").param("lastName", "Davis").param("page", "999")).andExpect(status().isOk())
+				.andExpect(model().attributeHasNoErrors("owner")).andExpect(model().attribute("currentPage", 2))
+				.andExpect(model().attribute("totalPages", 2)).andExpect(model().attribute("listOwners", hasSize(2)))
+				.andExpect(model().attributeDoesNotExist("similar")).andExpect(view().name("owners/ownersList"));
+		verify(this.similarNames, never()).search(anyString(), anyInt());
+	}
+
+	@Test
+	void testProcessFindFormFuzzy() throws Exception {
+		given(this.similarNames.search("Frnaklin", 5)).willReturn(Lists.newArrayList(TEST_OWNER_ID));
+		given(this.owners.findSummariesByIds(Lists.newArrayList(TEST_OWNER_ID)))
+				.willReturn(Lists.newArrayList(summary(george())));
+		mockMvc.perform(get("/owners").param("lastName", "Frnaklin").param("fuzzy", "true")).andExpect(status().isOk())
+				.andExpect(model().attribute("similar", true)).andExpect(model().attribute("noExactMatch", false))
+				.andExpect(model().attribute("listOwners", hasSize(1))).andExpect(view().name("owners/ownersList"));
+		verify(this.owners, never()).findSummariesByLastName(anyString(), any(Pageable.class));
+	}
+
+	@Test
+	void testProcessFindFormFallsBackToSimilarOwners() throws Exception {
+		given(this.owners.findSummariesByLastName(eq("Davsi"), any(Pageable.class)))
+				.willReturn(new PageImpl<OwnerSummary>(Lists.newArrayList()));
+		given(this.similarNames.search("Davsi", 5)).willReturn(Lists.newArrayList(TEST_OWNER_ID));
+		given(this.owners.findSummariesByIds(Lists.newArrayList(TEST_OWNER_ID)))
+				.willReturn(Lists.newArrayList(summary(george())));
+		mockMvc.perform(get("/owners").param("lastName", "Davsi")).andExpect(status().isOk())
+				.andExpect(model().attribute("similar", true)).andExpect(model().attribute("noExactMatch", true))
+				.andExpect(view().name("owners/ownersList"));
+	}
+
+	@Test
+	void testProcessFindFormWithCursor() throws Exception {
+		OwnerSummary george = summary(george());
+		Mockito.when(this.owners.findSummariesByLastNameAfter(eq("Fr"), eq("Davis"), eq(4), any(Pageable.class)))
+				.thenReturn(new SliceImpl<OwnerSummary>(Lists.newArrayList(george), PageRequest.of(0, 5), true));
+		OwnerSummary davis = new OwnerSummary(4, "Harold", "Davis", "563 Friendly St.", "Windsor", "6085553198");
+		String cursor = OwnerCursor.after(davis).encode();
+		mockMvc.perform(get("/owners").param("lastName", "Fr").param("page", "2").param("cursor", cursor))
+				.andExpect(status().isOk()).andExpect(model().attribute("currentPage", 2))
+				.andExpect(model().attributeDoesNotExist("totalPages"))
+				.andExpect(model().attribute("nextCursor", OwnerCursor.after(george).encode()))
+				.andExpect(model().attribute("previousCursor", OwnerCursor.before(george).encode()))
+				.andExpect(view().name("owners/ownersList"));
+	}
+
+	@Test
+	void testProcessFindFormWithMalformedCursor() throws Exception {
+		Page<OwnerSummary> tasks = new PageImpl<OwnerSummary>(
+				Lists.newArrayList(summary(george()), summary(new Owner())));
+		Mockito.when(this.owners.findSummariesByLastName(anyString(), any(Pageable.class))).thenReturn(tasks);
+		mockMvc.perform(get("/owners?page=2").param("cursor", "not-a-cursor")).andExpect(status().isOk())
+				.andExpect(model().attributeExists("totalPages")).andExpect(view().name("owners/ownersList"));
+	}
+
 	@Test
 	void testInitUpdateOwnerForm() throws Exception {
 		mockMvc.perform(get("/owners/{ownerId}/edit", TEST_OWNER_ID)).andExpect(status().isOk())
@@ -163,6 +265,7 @@ class OwnerControllerTests {
 				.andExpect(model().attribute("owner", hasProperty("city", is("Madison"))))
 				.andExpect(model().attribute("owner", hasProperty("telephone", is("6085551023"))))
 				.andExpect(view().name("owners/createOrUpdateOwnerForm"));
+		verify(this.owners, times(1)).findById(TEST_OWNER_ID);
 	}
 
 	@Test
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test class for {@link OwnerNameIndex}
+ */
+@ExtendWith(MockitoExtension.class)
+class OwnerNameIndexTests {
+
+	@Mock
+	private OwnerRepository owners;
+
+	private OwnerNameIndex index;
+
+	@BeforeEach
+	void setup() {
+		List<OwnerName> names = new ArrayList<>();
+		names.add(name(1, "Franklin"));
+		names.add(name(2, "Davis"));
+		names.add(name(4, "Davis"));
+		names.add(name(6, "Coleman"));
+		names.add(name(8, "Escobito"));
+		names.add(name(10, "Estaban"));
+		given(this.owners.findAllNames()).willReturn(names);
+		this.index = new OwnerNameIndex(this.owners);
+		this.index.rebuild();
+	}
+
+	@Test
+	void shouldCompleteIgnoringCase() {
+		assertThat(this.index.complete("es", 10)).containsExactly("Escobito", "Estaban");
+		assertThat(this.index.complete("DA", 10)).containsExactly("Davis");
+		assertThat(this.index.complete("", 10)).containsExactly("Coleman", "Davis", "Escobito", "Estaban", "Franklin");
+		assertThat(this.index.complete("x", 10)).isEmpty();
+	}
+
+	@Test
+	void shouldLimitMatches() {
+		assertThat(this.index.complete("", 2)).containsExactly("Coleman", "Davis");
+		assertThat(this.index.complete("", 0)).isEmpty();
+	}
+
+	@Test
+	void shouldAddCreatedOwner() {
+		this.index.update(11, "Black");
+		assertThat(this.index.complete("b", 10)).containsExactly("Black");
+	}
+
+	@Test
+	void shouldRetractRenamedOwner() {
+		this.index.update(1, "Franklyn");
+		assertThat(this.index.complete("frank", 10)).containsExactly("Franklyn");
+
+		// Davis is still used by owner 4
+		this.index.update(2, "Daviss");
+		assertThat(this.index.complete("dav", 10)).containsExactly("Davis", "Daviss");
+		this.index.update(4, "Davies");
+		assertThat(this.index.complete("dav", 10)).containsExactly("Davies", "Daviss");
+	}
+
+	@Test
+	void shouldApplyUpdatesAtOnce() {
+		Map<Integer, String> lastNames = new LinkedHashMap<>();
+		lastNames.put(11, "Zimmer");
+		lastNames.put(12, "Adams");
+		lastNames.put(13, "Davis");
+		lastNames.put(6, "Cole");
+		lastNames.put(14, "Black");
+		this.index.updateAll(lastNames);
+		assertThat(this.index.complete("", 10)).containsExactly("Adams", "Black", "Cole", "Davis", "Escobito",
+				"Estaban", "Franklin", "Zimmer");
+	}
+
+	private OwnerName name(int id, String lastName) {
+		return new OwnerName() {
+
+			@Override
+			public Integer getId() {
+				return id;
+			}
+
+			@Override
+			public String getFirstName() {
+				return null;
+			}
+
+			@Override
+			public String getLastName() {
+				return lastName;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Counts the SQL statements each owner, pet and visit endpoint executes, so that a change
+ * loading an owner aggregate more than once per request shows up as a failure.
+ * <p>
+ * Caching is disabled to count what actually reaches the database. Each test runs in a
+ * transaction that is rolled back, and is flushed before counting so writes are included.
+ */
+@SpringBootTest(properties = "spring.cache.type=none")
+@AutoConfigureMockMvc
+@Transactional
+class OwnerStatementCountTests {
+
+	/**
+	 * Statements to load owner 6 once: the owner with its pets, their pet type, and the
+	 * visits of each of the two pets.
+	 */
+	private static final long OWNER_6 = 4;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setup() {
+		this.statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@Test
+	void testShowOwner() throws Exception {
+		assertThat(read(get("/owners/6"))).isEqualTo(OWNER_6);
+	}
+
+	@Test
+	void testInitUpdateOwnerForm() throws Exception {
+		assertThat(read(get("/owners/6/edit"))).isEqualTo(OWNER_6);
+	}
+
+	@Test
+	void testProcessUpdateOwnerForm() throws Exception {
+		assertThat(write(post("/owners/6/edit").param("firstName", "Jean").param("lastName", "Kohlman")
+				.param("address", "105 N. Lake St.").param("city", "Monona").param("telephone", "6085552654")))
+						.isEqualTo(OWNER_6 + 1);
+	}
+
+	@Test
+	void testInitNewPetForm() throws Exception {
+		assertThat(read(get("/owners/6/pets/new"))).isEqualTo(OWNER_6);
+	}
+
+	@Test
+	void testProcessNewPetForm() throws Exception {
+		// insert, owner_id update and a lookup of the (detached) pet type while merging
+		assertThat(write(post("/owners/6/pets/new").param("name", "Betty").param("type", "hamster").param("birthDate",
+				"2015-02-12"))).isEqualTo(OWNER_6 + 3);
+	}
+
+	@Test
+	void testInitUpdatePetForm() throws Exception {
+		assertThat(read(get("/owners/6/pets/7/edit"))).isEqualTo(OWNER_6);
+	}
+
+	@Test
+	void testProcessUpdatePetForm() throws Exception {
+		assertThat(write(post("/owners/6/pets/7/edit").param("name", "Sammy").param("type", "cat").param("birthDate",
+				"2012-09-04"))).isEqualTo(OWNER_6 + 1);
+	}
+
+	@Test
+	void testInitNewVisitForm() throws Exception {
+		assertThat(read(get("/owners/6/pets/7/visits/new"))).isEqualTo(OWNER_6);
+	}
+
+	@Test
+	void testProcessNewVisitForm() throws Exception {
+		// no owner load, the visit is a single JDBC insert that Hibernate does not count
+		assertThat(write(post("/owners/6/pets/7/visits/new").param("date", "2013-01-01").param("description", "shots")))
+				.isEqualTo(0);
+	}
+
+	@Test
+	void testListOwners() throws Exception {
+		// one page of summaries, the total count and the pet names of the page
+		assertThat(read(get("/owners").param("lastName", ""))).isEqualTo(3);
+	}
+
+	/**
+	 * Perform a request that renders a page and return the number of statements it ran.
+	 */
+	private long read(RequestBuilder request) throws Exception {
+		this.statistics.clear();
+		this.mockMvc.perform(request).andExpect(status().isOk());
+		return this.statistics.getPrepareStatementCount();
+	}
+
+	/**
+	 * Perform a form submission and return the number of statements it ran, including the
+	 * writes that are flushed on commit.
+	 */
+	private long write(RequestBuilder request) throws Exception {
+		this.statistics.clear();
+		this.mockMvc.perform(request).andExpect(status().is3xxRedirection());
+		this.entityManager.flush();
+		return this.statistics.getPrepareStatementCount();
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test class for {@link OwnerTrigramIndex}
+ */
+@ExtendWith(MockitoExtension.class)
+class OwnerTrigramIndexTests {
+
+	@Mock
+	private OwnerRepository owners;
+
+	private OwnerTrigramIndex index;
+
+	@BeforeEach
+	void setup() {
+		List<OwnerName> names = new ArrayList<>();
+		names.add(name(1, "George", "Franklin"));
+		names.add(name(2, "Betty", "Davis"));
+		names.add(name(4, "Harold", "Davis"));
+		names.add(name(8, "Maria", "Escobito"));
+		names.add(name(9, "David", "Schroeder"));
+		names.add(name(10, "Carlos", "Estaban"));
+		given(this.owners.findAllNames()).willReturn(names);
+		this.index = new OwnerTrigramIndex(this.owners);
+		this.index.rebuild();
+	}
+
+	@Test
+	void shouldFindMisspelledLastName() {
+		assertThat(this.index.search("Davsi", 10)).startsWith(2, 4);
+		assertThat(this.index.search("frnaklin", 10)).containsExactly(1);
+	}
+
+	@Test
+	void shouldFindMisspelledFirstName() {
+		assertThat(this.index.search("Haorld", 10)).containsExactly(4);
+	}
+
+	@Test
+	void shouldRankMostSimilarFirst() {
+		assertThat(this.index.search("Davi", 10)).startsWith(2, 4).contains(9);
+		assertThat(this.index.search("Davi", 1)).containsExactly(2);
+	}
+
+	@Test
+	void shouldNotMatchUnrelatedNames() {
+		assertThat(this.index.search("Zyx", 10)).isEmpty();
+		assertThat(this.index.search("", 10)).isEmpty();
+	}
+
+	@Test
+	void shouldFollowUpdates() {
+		this.index.update(1, "George", "Frankenstein");
+		assertThat(this.index.search("Franklin", 10)).isEmpty();
+		assertThat(this.index.search("Frankenstien", 10)).containsExactly(1);
+
+		this.index.update(11, "Jeff", "Black");
+		assertThat(this.index.search("Blak", 10)).containsExactly(11);
+	}
+
+	@Test
+	void shouldCountTranspositionAsOneEdit() {
+		assertThat(OwnerTrigramIndex.distance("davsi", "davis")).isEqualTo(1);
+		assertThat(OwnerTrigramIndex.distance("davsi", "david")).isEqualTo(2);
+		assertThat(OwnerTrigramIndex.distance("", "abc")).isEqualTo(3);
+	}
+
+	@Test
+	void shouldSizeCountsToTouchedPostingsNotToIndex() {
+		for (int i = 0; i < 10_000; i++) {
+			this.index.update(1_000_000 + i * 500, "Zebulon", "Quixley");
+		}
+		this.index.update(6_000_000, "Anna", "Davies");
+		OwnerTrigramIndex.SharedTrigramCounts counts = this.index.count(OwnerTrigramIndex.trigrams("davis"));
+		// the six trigrams of "davis" occur in a handful of names only
+		assertThat(counts.capacity()).isLessThanOrEqualTo(64);
+		assertThat(counts.get(2 << 1)).isEqualTo(6);
+		assertThat(this.index.search("Davis", 5)).contains(2, 4, 6_000_000);
+	}
+
+	@Test
+	void shouldDeduplicateTrigrams() {
+		// " a", " aa", "aaa" and "aa " once each
+		assertThat(OwnerTrigramIndex.trigrams("aaaa")).hasSize(4);
+	}
+
+	private OwnerName name(int id, String firstName, String lastName) {
+		return new OwnerName() {
+
+			@Override
+			public Integer getId() {
+				return id;
+			}
+
+			@Override
+			public String getFirstName() {
+				return firstName;
+			}
+
+			@Override
+			public String getLastName() {
+				return lastName;
+			}
+		};
+	}
+
+}
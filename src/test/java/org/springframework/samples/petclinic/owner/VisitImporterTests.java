@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * Test class for {@link VisitImporter}
+ */
+@ExtendWith(MockitoExtension.class)
+class VisitImporterTests {
+
+	@Mock
+	private VisitRepository visits;
+
+	@Captor
+	private ArgumentCaptor<List<Integer>> petIds;
+
+	@Captor
+	private ArgumentCaptor<List<Visit>> batch;
+
+	private VisitImporter importer;
+
+	@BeforeEach
+	void setup() {
+		Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+		this.importer = new VisitImporter(this.visits, validator, new ObjectMapper(), 2);
+	}
+
+	@Test
+	void shouldImportJsonLinesInBatches() throws Exception {
+		given(this.visits.addVisits(anyList(), anyList())).willReturn(new int[] { 1, 1 }, new int[] { 1 });
+		ImportResult result = this.importer.importJsonLines(
+				new StringReader("{\"petId\": 7, \"date\": \"2013-01-01\", \"description\": \"rabies shot\"}\n"
+						+ "{\"petId\": 8, \"description\": \"neutered\"}\n\n{\"petId\": 7, \"description\": \"spayed\"}\n"));
+
+		assertThat(result.getImported()).isEqualTo(3);
+		assertThat(result.getFailed()).isZero();
+		verify(this.visits, times(2)).addVisits(this.petIds.capture(), this.batch.capture());
+		assertThat(this.petIds.getAllValues().get(0)).containsExactly(7, 8);
+		assertThat(this.batch.getAllValues().get(0).get(0).getDate()).isEqualTo(LocalDate.of(2013, 1, 1));
+	}
+
+	@Test
+	void shouldReportRejectedLines() throws Exception {
+		given(this.visits.addVisits(anyList(), anyList())).willReturn(new int[] { 0 });
+		ImportResult result = this.importer.importJsonLines(new StringReader(
+				"{\"petId\": 7\n" + "{\"description\": \"shots\"}\n" + "{\"petId\": 7, \"description\": \"\"}\n"
+						+ "{\"petId\": 7, \"date\": \"01/01/2013\", \"description\": \"shots\"}\n"
+						+ "{\"petId\": 99, \"description\": \"shots\"}\n"));
+
+		assertThat(result.getImported()).isZero();
+		assertThat(result.getFailed()).isEqualTo(5);
+		assertThat(result.getErrors()).extracting(ImportResult.RowError::getLine).containsExactly(1L, 2L, 3L, 4L, 5L);
+		assertThat(result.getErrors().get(2).getMessage()).startsWith("description");
+		assertThat(result.getErrors().get(4).getMessage()).isEqualTo("petId 99 does not exist");
+	}
+
+	@Test
+	void shouldImportCsv() throws Exception {
+		given(this.visits.addVisits(anyList(), anyList())).willReturn(new int[] { 1, 1 });
+		ImportResult result = this.importer.importCsv(new StringReader(
+				"petId,date,description\n7,2013-01-01,\"shots, and a checkup\"\n8,,neutered\n8,2013-01-01\n"));
+
+		assertThat(result.getImported()).isEqualTo(2);
+		assertThat(result.getErrors()).extracting(ImportResult.RowError::getLine).containsExactly(4L);
+		verify(this.visits).addVisits(this.petIds.capture(), this.batch.capture());
+		assertThat(this.batch.getValue()).extracting(Visit::getDescription).containsExactly("shots, and a checkup",
+				"neutered");
+		assertThat(this.batch.getValue().get(1).getDate()).isEqualTo(LocalDate.now());
+	}
+
+	@Test
+	void shouldRetryRejectedBatchLineByLine() throws Exception {
+		given(this.visits.addVisits(anyList(), anyList()))
+				.willThrow(new DataIntegrityViolationException("batch", new SQLException("visit_date is null")))
+				.willReturn(new int[] { 1 })
+				.willThrow(new DataIntegrityViolationException("row", new SQLException("visit_date is null")));
+		ImportResult result = this.importer.importCsv(new StringReader("7,2013-01-01,shots\n8,2013-01-01,neutered\n"));
+
+		assertThat(result.getImported()).isEqualTo(1);
+		assertThat(result.getErrors()).extracting(ImportResult.RowError::getLine).containsExactly(2L);
+		assertThat(result.getErrors().get(0).getMessage()).isEqualTo("visit_date is null");
+		verify(this.visits, times(3)).addVisits(anyList(), anyList());
+	}
+
+	@Test
+	void shouldRejectDescriptionsLongerThanTheColumn() throws Exception {
+		StringBuilder description = new StringBuilder();
+		for (int i = 0; i < 256; i++) {
+			description.append('x');
+		}
+		ImportResult result = this.importer.importCsv(new StringReader("7,2013-01-01," + description + "\n"));
+
+		assertThat(result.getErrors()).extracting(ImportResult.RowError::getLine).containsExactly(1L);
+		assertThat(result.getErrors().get(0).getMessage()).startsWith("description");
+	}
+
+	@Test
+	void shouldListOnlyTheFirstErrors() throws Exception {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < ImportResult.MAX_REPORTED_ERRORS + 10; i++) {
+			input.append("x\n");
+		}
+		ImportResult result = this.importer.importCsv(new StringReader(input.toString()));
+
+		assertThat(result.getFailed()).isEqualTo(ImportResult.MAX_REPORTED_ERRORS + 10);
+		assertThat(result.getErrors()).hasSize(ImportResult.MAX_REPORTED_ERRORS);
+	}
+
+}
@@ -19,25 +19,46 @@ package org.springframework.samples.petclinic.service;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.samples.petclinic.owner.Owner;
 import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.OwnerSummary;
 import org.springframework.samples.petclinic.owner.Pet;
 import org.springframework.samples.petclinic.owner.PetType;
 import org.springframework.samples.petclinic.owner.Visit;
+import org.springframework.samples.petclinic.owner.VisitRepository;
+import org.springframework.samples.petclinic.vet.Specialty;
 import org.springframework.samples.petclinic.vet.Vet;
 import org.springframework.samples.petclinic.vet.VetRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Integration test of the Service and the Repository layer.
@@ -68,6 +89,7 @@ import org.springframework.transaction.annotation.Transactional;
  * @author Dave Syer
  */
 @DataJpaTest(includeFilters = @ComponentScan.Filter(Service.class))
+@Import(VisitRepository.class)
 // Ensure that if the mysql profile is active we connect to the real database:
 @AutoConfigureTestDatabase(replace = Replace.NONE)
 // @TestPropertySource("/application-postgres.properties")
@@ -79,6 +101,15 @@ class ClinicServiceTests {
 	@Autowired
 	protected VetRepository vets;
 
+	@Autowired
+	protected VisitRepository visits;
+
+	@Autowired
+	protected JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	protected EntityManagerFactory entityManagerFactory;
+
 	Pageable pageable;
 
 	@Test
@@ -90,6 +121,63 @@ class ClinicServiceTests {
 		assertThat(owners).isEmpty();
 	}
 
+	@Test
+	void shouldSeekOwnerSummariesByLastNameAndId() {
+		Pageable slice = PageRequest.of(0, 3);
+		Page<OwnerSummary> first = this.owners.findSummariesByLastName("", slice);
+		assertThat(first).extracting(OwnerSummary::getId).containsExactly(7, 6, 2);
+		assertThat(first.getTotalElements()).isEqualTo(10);
+
+		Slice<OwnerSummary> next = this.owners.findSummariesByLastNameAfter("", "Davis", 2, slice);
+		assertThat(next).extracting(OwnerSummary::getId).containsExactly(4, 8, 10);
+		assertThat(next.hasNext()).isTrue();
+		// seeking lines up with the equivalent offset page
+		assertThat(this.owners.findSummariesByLastName("", PageRequest.of(1, 3))).extracting(OwnerSummary::getId)
+				.containsExactly(4, 8, 10);
+
+		Slice<OwnerSummary> previous = this.owners.findSummariesByLastNameBefore("", "Davis", 4, slice);
+		assertThat(previous).extracting(OwnerSummary::getId).containsExactly(2, 6, 7);
+		assertThat(previous.hasNext()).isFalse();
+
+		assertThat(this.owners.findSummariesByLastNameAfter("Davis", "Davis", 4, slice)).isEmpty();
+	}
+
+	@Test
+	void shouldFindPetNamesByOwnerIds() {
+		List<OwnerSummary.PetName> petNames = this.owners.findPetNames(Arrays.asList(3, 6));
+		assertThat(petNames).extracting(OwnerSummary.PetName::getName).containsExactly("Jewel", "Max", "Rosy",
+				"Samantha");
+		assertThat(petNames).extracting(OwnerSummary.PetName::getOwnerId).containsOnly(3, 6);
+	}
+
+	@Test
+	void shouldListOwnersWithFewerStatementsThanEntityQuery() {
+		Statistics statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.setStatisticsEnabled(true);
+		try {
+			Pageable page = PageRequest.of(0, 5);
+			statistics.clear();
+			Page<Owner> entities = this.owners.findByLastName("", page);
+			long entityStatements = statistics.getPrepareStatementCount();
+			long entityLoads = statistics.getEntityLoadCount();
+
+			statistics.clear();
+			Page<OwnerSummary> summaries = this.owners.findSummariesByLastName("", page);
+			this.owners.findPetNames(summaries.map(OwnerSummary::getId).getContent());
+			long summaryStatements = statistics.getPrepareStatementCount();
+
+			assertThat(summaries).extracting(OwnerSummary::getId).containsExactlyElementsOf(entities.map(Owner::getId));
+			// page, count and pet names, no matter how many pets and visits there are
+			assertThat(summaryStatements).isEqualTo(3);
+			assertThat(statistics.getEntityLoadCount()).isZero();
+			assertThat(entityStatements).isGreaterThan(summaryStatements);
+			assertThat(entityLoads).isGreaterThan(5);
+		}
+		finally {
+			statistics.setStatisticsEnabled(false);
+		}
+	}
+
 	@Test
 	void shouldFindSingleOwnerWithPet() {
 		Owner owner = this.owners.findById(1);
@@ -193,6 +281,12 @@ class ClinicServiceTests {
 		assertThat(vet.getSpecialties().get(1).getName()).isEqualTo("surgery");
 	}
 
+	@Test
+	void shouldFindAllSpecialties() {
+		Collection<Specialty> specialties = this.vets.findSpecialties();
+		assertThat(specialties).extracting(Specialty::getName).containsExactly("dentistry", "radiology", "surgery");
+	}
+
 	@Test
 	@Transactional
 	void shouldAddNewVisitForPet() {
@@ -212,6 +306,68 @@ class ClinicServiceTests {
 				.allMatch(value -> value.getId() != null);
 	}
 
+	@Test
+	@Transactional
+	void shouldInsertVisitByPetId() {
+		int found = this.owners.findById(6).getPet(7).getVisits().size();
+		Visit visit = new Visit();
+		visit.setDescription("test");
+
+		assertThat(this.visits.addVisit(6, 7, visit)).isTrue();
+		assertThat(visit.getId()).isNotNull();
+		// neither an unknown pet nor another owner's pet
+		assertThat(this.visits.addVisit(6, 999, new Visit())).isFalse();
+		assertThat(this.visits.addVisit(1, 7, new Visit())).isFalse();
+
+		assertThat(this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visits WHERE pet_id = 7", Integer.class))
+				.isEqualTo(found + 1);
+	}
+
+	@Test
+	@Transactional
+	void shouldEvictOnlyOwnersOfImportedVisits() {
+		ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("owners");
+		Cache cache = cacheManager.getCache("owners");
+		for (int ownerId = 1; ownerId <= 10; ownerId++) {
+			cache.put(ownerId, "cached");
+		}
+		VisitRepository visits = new VisitRepository(this.jdbcTemplate, this.entityManagerFactory,
+				new StaticListableBeanFactory(Collections.singletonMap("cacheManager", cacheManager))
+						.getBeanProvider(CacheManager.class));
+		Visit visit = new Visit();
+		visit.setDescription("test");
+
+		// pets 1, 3 and 4 belong to owners 1, 3 and 3
+		visits.addVisits(Arrays.asList(1, 3, 4), Arrays.asList(visit, visit, visit));
+		assertThat(cache.get(1)).isNotNull();
+		commit();
+
+		assertThat(cache.get(1)).isNull();
+		assertThat(cache.get(3)).isNull();
+		assertThat(cache.get(2)).isNotNull();
+		assertThat(cache.get(4)).isNotNull();
+	}
+
+	@Test
+	@Transactional
+	void shouldEvictOwnerOfNewVisitAfterCommit() {
+		ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("owners");
+		Cache cache = cacheManager.getCache("owners");
+		cache.put(6, "cached");
+		VisitRepository visits = new VisitRepository(this.jdbcTemplate, this.entityManagerFactory,
+				new StaticListableBeanFactory(Collections.singletonMap("cacheManager", cacheManager))
+						.getBeanProvider(CacheManager.class));
+		Visit visit = new Visit();
+		visit.setDescription("test");
+
+		assertThat(visits.addVisit(6, 7, visit)).isTrue();
+		// a read before the commit must not be able to cache the owner without the visit
+		assertThat(cache.get(6)).isNotNull();
+		commit();
+
+		assertThat(cache.get(6)).isNull();
+	}
+
 	@Test
 	void shouldFindVisitsByPetId() throws Exception {
 		Owner owner6 = this.owners.findById(6);
@@ -223,4 +379,11 @@ class ClinicServiceTests {
 				.element(0).extracting(Visit::getDate).isNotNull();
 	}
 
+	/**
+	 * Run the after-commit callbacks of the test transaction, which is rolled back.
+	 */
+	private static void commit() {
+		TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+	}
+
 }
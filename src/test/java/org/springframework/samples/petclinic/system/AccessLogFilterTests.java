@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Test class for {@link AccessLogFilter}
+ */
+class AccessLogFilterTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void shouldRecordRequests() throws Exception {
+		Path file = this.directory.resolve("access.log");
+		AccessLogFilter filter = new AccessLogFilter(file, 16);
+		MockHttpServletRequest visit = new MockHttpServletRequest("POST", "/petclinic/owners/1/pets/1/visits/new");
+		visit.setContextPath("/petclinic");
+		visit.addParameter("date", "2022-07-01");
+		visit.addParameter("description", "révision annuelle");
+		filter.doFilter(visit, new MockHttpServletResponse(),
+				(request, response) -> ((MockHttpServletResponse) response).setStatus(302));
+		MockHttpServletRequest find = new MockHttpServletRequest("GET", "/owners");
+		find.addParameter("lastName", "Davis", "Franklin");
+		filter.doFilter(find, new MockHttpServletResponse(), (request, response) -> pause(5));
+		filter.doFilter(new MockHttpServletRequest("GET", "/webjars/bootstrap/css/bootstrap.min.css"),
+				new MockHttpServletResponse(), (request, response) -> {
+				});
+		assertThatIllegalStateException().isThrownBy(() -> filter.doFilter(new MockHttpServletRequest("MKCOL", "/oups"),
+				new MockHttpServletResponse(), (request, response) -> {
+					throw new IllegalStateException();
+				}));
+		filter.destroy();
+
+		try (InputStream in = Files.newInputStream(file); AccessLog.Reader reader = new AccessLog.Reader(in)) {
+			assertThat(reader.getStartMillis()).isPositive();
+			AccessLog.Entry first = reader.read();
+			assertThat(first.getMethod()).isEqualTo("POST");
+			assertThat(first.getPath()).isEqualTo("/owners/1/pets/1/visits/new");
+			assertThat(first.getStatus()).isEqualTo(302);
+			assertThat(first.getParameters()).containsOnlyKeys("date", "description");
+			assertThat(first.getParameters().get("description")).containsExactly("révision annuelle");
+			AccessLog.Entry second = reader.read();
+			assertThat(second.getPath()).isEqualTo("/owners");
+			assertThat(second.getParameters().get("lastName")).containsExactly("Davis", "Franklin");
+			assertThat(second.getStartMicros()).isGreaterThanOrEqualTo(first.getStartMicros());
+			assertThat(second.getDurationMicros()).isGreaterThanOrEqualTo(5000);
+			AccessLog.Entry third = reader.read();
+			assertThat(third.getMethod()).isEqualTo("MKCOL");
+			assertThat(third.getStatus()).isEqualTo(500);
+			assertThat(reader.read()).isNull();
+		}
+	}
+
+	@Test
+	void shouldIgnoreRecordCutShort() throws Exception {
+		AccessLog.Buffer buffer = new AccessLog.Buffer();
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		AccessLog.writeHeader(log, 0);
+		AccessLog.encode(buffer, new AccessLog.Entry(0, 1000, 200, "GET", "/vets", Collections.emptyMap()));
+		buffer.writeTo(log);
+		// longer than 127 bytes, with a two-byte length prefix
+		AccessLog.encode(buffer, new AccessLog.Entry(0, 1000, 200, "GET",
+				"/owners/" + String.join("", Collections.nCopies(200, "x")), Collections.emptyMap()));
+		buffer.writeTo(log);
+		buffer.writeTo(log);
+		byte[] bytes = log.toByteArray();
+
+		try (AccessLog.Reader reader = new AccessLog.Reader(
+				new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)))) {
+			assertThat(reader.read().getPath()).isEqualTo("/vets");
+			assertThat(reader.read().getPath()).hasSize(208);
+			assertThat(reader.read()).isNull();
+		}
+	}
+
+	private static void pause(long millis) {
+		long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+		while (System.nanoTime() < end) {
+			LockSupport.parkNanos(end - System.nanoTime());
+		}
+	}
+
+}
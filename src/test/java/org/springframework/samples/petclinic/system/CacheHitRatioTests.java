@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Trace-driven comparison of the hit ratios of the Ehcache and Caffeine cache providers,
+ * both configured by {@link CacheConfiguration} and {@link CaffeineCacheConfiguration}
+ * with the same number of heap entries.
+ * <p>
+ * The trace is read from the file given by <code>petclinic.cache.trace</code>, one key
+ * per line, e.g. the owner ids of recorded owner lookups. Without a trace a synthetic one
+ * is used: Zipf-distributed lookups of owners whose popularity shifts over time,
+ * interleaved with scans over owners looked up only once.
+ * <p>
+ * Run with <code>./mvnw test -Dtest=CacheHitRatioTests -Dpetclinic.loadtests=true</code>.
+ */
+@EnabledIfSystemProperty(named = "petclinic.loadtests", matches = "true")
+class CacheHitRatioTests {
+
+	private static final int CACHE_SIZE = 1000;
+
+	@Test
+	void compareHitRatios() throws IOException {
+		List<String> trace = trace();
+		CacheTierProperties.Tiers tiers = new CacheTierProperties.Tiers();
+		tiers.setHeapEntries(CACHE_SIZE);
+
+		double ehcache = ehcacheHitRatio(trace, tiers);
+		double caffeine = caffeineHitRatio(trace, tiers);
+		System.out.printf("Hit ratios for %,d lookups with %,d entries: Ehcache %.2f%%, Caffeine %.2f%%%n",
+				trace.size(), CACHE_SIZE, ehcache * 100, caffeine * 100);
+		if (System.getProperty("petclinic.cache.trace") == null) {
+			assertThat(caffeine).isGreaterThan(ehcache);
+		}
+	}
+
+	private double ehcacheHitRatio(List<String> trace, CacheTierProperties.Tiers tiers) {
+		try (CacheManager cacheManager = Caching.getCachingProvider().getCacheManager()) {
+			javax.cache.Cache<Object, Object> cache = cacheManager.createCache("trace", Eh107Configuration
+					.fromEhcacheCacheConfiguration(CacheConfiguration.cacheConfiguration(tiers, false)));
+			long hits = 0;
+			for (String key : trace) {
+				if (cache.get(key) != null) {
+					hits++;
+				}
+				else {
+					cache.put(key, key);
+				}
+			}
+			cacheManager.destroyCache("trace");
+			return (double) hits / trace.size();
+		}
+	}
+
+	private double caffeineHitRatio(List<String> trace, CacheTierProperties.Tiers tiers) {
+		// evict on the calling thread so that the replay is deterministic
+		Cache<Object, Object> cache = CaffeineCacheConfiguration.caffeine(tiers, false).executor(Runnable::run).build();
+		long hits = 0;
+		for (String key : trace) {
+			if (cache.getIfPresent(key) != null) {
+				hits++;
+			}
+			else {
+				cache.put(key, key);
+			}
+		}
+		return (double) hits / trace.size();
+	}
+
+	private static List<String> trace() throws IOException {
+		String file = System.getProperty("petclinic.cache.trace");
+		if (file != null) {
+			try (Stream<String> lines = Files.lines(Paths.get(file))) {
+				return lines.filter(line -> !line.isEmpty()).collect(Collectors.toList());
+			}
+		}
+		return syntheticTrace(new Random(42), 100_000, 1_000_000);
+	}
+
+	private static List<String> syntheticTrace(Random random, int owners, int lookups) {
+		double[] cumulative = new double[owners];
+		double sum = 0;
+		for (int rank = 0; rank < owners; rank++) {
+			sum += 1.0 / (rank + 1);
+			cumulative[rank] = sum;
+		}
+		List<String> trace = new ArrayList<>(lookups);
+		int shift = 0;
+		int scanned = owners;
+		while (trace.size() < lookups) {
+			if (trace.size() % 100_000 == 0) {
+				// the popular owners change over time
+				shift = random.nextInt(owners);
+			}
+			if (random.nextInt(100) == 0) {
+				// a scan, e.g. paging through the owners list
+				for (int i = 0; i < 200 && trace.size() < lookups; i++) {
+					trace.add(String.valueOf(scanned++));
+				}
+				continue;
+			}
+			int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+			rank = (rank < 0) ? -rank - 1 : rank;
+			trace.add(String.valueOf((rank + shift) % owners));
+		}
+		return trace;
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collections;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.jsr107.Eh107Configuration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Load test for the cache tiers of {@link CacheConfiguration}: fills an owners cache with
+ * a working set much larger than its heap tier and compares the old generation growth
+ * with that of a cache holding the same working set on the heap.
+ * <p>
+ * Run with <code>./mvnw test -Dtest=CacheTierLoadTests -Dpetclinic.loadtests=true</code>.
+ */
+@EnabledIfSystemProperty(named = "petclinic.loadtests", matches = "true")
+class CacheTierLoadTests {
+
+	private static final int OWNERS = 100_000;
+
+	@Test
+	void offHeapTierLimitsOldGenerationGrowth() {
+		CacheTierProperties.Tiers heapOnly = new CacheTierProperties.Tiers();
+		heapOnly.setHeapEntries(OWNERS);
+		CacheTierProperties.Tiers tiered = new CacheTierProperties.Tiers();
+		tiered.setHeapEntries(1000);
+		tiered.setOffHeap(DataSize.ofMegabytes(512));
+
+		long heapOnlyGrowth = oldGenerationGrowth(heapOnly);
+		long tieredGrowth = oldGenerationGrowth(tiered);
+		System.out.printf("Old generation growth for %,d owners: heap only %,d KB, heap + off-heap %,d KB%n", OWNERS,
+				heapOnlyGrowth / 1024, tieredGrowth / 1024);
+		assertThat(tieredGrowth).isLessThan(heapOnlyGrowth / 4);
+	}
+
+	private long oldGenerationGrowth(CacheTierProperties.Tiers tiers) {
+		try (CacheManager cacheManager = Caching.getCachingProvider().getCacheManager()) {
+			Cache<Object, Object> owners = cacheManager.createCache("owners", Eh107Configuration
+					.fromEhcacheCacheConfiguration(CacheConfiguration.cacheConfiguration(tiers, true)));
+			long before = oldGenerationUsedAfterGc();
+			for (int id = 1; id <= OWNERS; id++) {
+				owners.put(id, owner(id));
+			}
+			long growth = oldGenerationUsedAfterGc() - before;
+			assertThat(owners.get(OWNERS)).isNotNull();
+			cacheManager.destroyCache("owners");
+			return growth;
+		}
+	}
+
+	private static Owner owner(int id) {
+		Owner owner = new Owner();
+		owner.setId(id);
+		owner.setFirstName("First" + id);
+		owner.setLastName("Last" + id);
+		owner.setAddress(id + " " + String.join("", Collections.nCopies(40, "Main Street ")));
+		owner.setCity("Madison");
+		owner.setTelephone(String.valueOf(6085550000L + id));
+		for (int i = 0; i < 3; i++) {
+			Pet pet = new Pet();
+			pet.setId(id * 3 + i);
+			pet.setName("Pet" + i);
+			owner.addPet(pet);
+		}
+		return owner;
+	}
+
+	private static long oldGenerationUsedAfterGc() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			String name = pool.getName();
+			if (pool.getType() == MemoryType.HEAP && (name.contains("Old") || name.contains("Tenured"))) {
+				used += pool.getUsage().getUsed();
+			}
+		}
+		return used;
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.vet.VetRepository;
+
+/**
+ * Test class for {@link CaffeineCacheConfiguration}
+ */
+@ExtendWith(MockitoExtension.class)
+class CaffeineCacheConfigurationTests {
+
+	@Mock
+	private OwnerRepository owners;
+
+	@Mock
+	private VetRepository vets;
+
+	@Test
+	void shouldLoadOwnersAndReturnCopies() {
+		Owner franklin = new Owner();
+		franklin.setId(1);
+		franklin.setLastName("Franklin");
+		given(this.owners.loadById(1)).willReturn(franklin);
+		CacheManager cacheManager = new CaffeineCacheConfiguration().cacheManager(new CacheTierProperties(),
+				this.owners, this.vets);
+
+		Cache cache = cacheManager.getCache("owners");
+		((Owner) cache.get(1).get()).setLastName("Changed");
+		assertThat(((Owner) cache.get(1).get()).getLastName()).isEqualTo("Franklin");
+		verify(this.owners, times(1)).loadById(1);
+		assertThat(cacheManager.getCache("vets")).isNotNull();
+		assertThat(cacheManager.getCache("unknown")).isNull();
+	}
+
+	@Test
+	void shouldRefreshInBackground() {
+		CacheTierProperties.Tiers tiers = new CacheTierProperties.Tiers();
+		tiers.setRefreshAfterWrite(Duration.ofMinutes(1));
+		AtomicLong nanos = new AtomicLong();
+		AtomicInteger loads = new AtomicInteger();
+		LoadingCache<Object, Object> cache = CaffeineCacheConfiguration.caffeine(tiers, true).ticker(nanos::get)
+				.executor(Runnable::run).build(key -> loads.incrementAndGet());
+
+		assertThat(cache.get("all")).isEqualTo(1);
+		nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+		// the stale value is served while it is reloaded
+		assertThat(cache.get("all")).isEqualTo(1);
+		assertThat(cache.get("all")).isEqualTo(2);
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Test class for {@link DataGenerator}
+ */
+class DataGeneratorTests {
+
+	private final List<EmbeddedDatabase> databases = new ArrayList<>();
+
+	@AfterEach
+	void shutdown() {
+		this.databases.forEach(EmbeddedDatabase::shutdown);
+	}
+
+	@Test
+	void shouldAddConsistentData() {
+		JdbcTemplate jdbc = database();
+		DataGenerator.Result result = generator(jdbc, 4).generate();
+
+		assertThat(result.getOwners()).isEqualTo(2000);
+		assertThat(result.getVets()).isEqualTo(20);
+		assertThat(count(jdbc, "SELECT COUNT(*) FROM owners")).isEqualTo(10 + 2000);
+		assertThat(count(jdbc, "SELECT COUNT(*) FROM pets")).isEqualTo(13 + result.getPets());
+		assertThat(count(jdbc, "SELECT COUNT(*) FROM visits")).isEqualTo(4 + result.getVisits());
+		assertThat(count(jdbc, "SELECT COUNT(*) FROM vets")).isEqualTo(6 + 20);
+		assertThat(count(jdbc, "SELECT COUNT(*) FROM visits WHERE visit_date > '2022-07-01'")).isZero();
+		assertThat(count(jdbc,
+				"SELECT COUNT(*) FROM visits v JOIN pets p ON p.id = v.pet_id " + "WHERE v.visit_date < p.birth_date"))
+						.isZero();
+
+		// new rows are numbered after the generated ones
+		jdbc.update("INSERT INTO owners (first_name, last_name) VALUES ('George', 'Franklin')");
+		assertThat(count(jdbc, "SELECT MAX(id) FROM owners")).isEqualTo(10 + 2000 + 1);
+	}
+
+	@Test
+	void shouldSkewDistributions() {
+		JdbcTemplate jdbc = database();
+		DataGenerator.Result result = generator(jdbc, 4).generate();
+
+		// the most common last name is shared by about one owner in ten
+		assertThat(count(jdbc, "SELECT MAX(c) FROM (SELECT COUNT(*) AS c FROM owners GROUP BY last_name)"))
+				.isGreaterThan(result.getOwners() / 20);
+		// while a few pets have long histories
+		assertThat(count(jdbc,
+				"SELECT COUNT(*) FROM (SELECT pet_id FROM visits GROUP BY pet_id " + "HAVING COUNT(*) > 50)"))
+						.isGreaterThan(10);
+		assertThat(count(jdbc, "SELECT COUNT(*) FROM pets WHERE id NOT IN (SELECT pet_id FROM visits)"))
+				.isGreaterThan(result.getPets() / 3);
+	}
+
+	@Test
+	void shouldGenerateTheSameDataWithAnyNumberOfThreads() {
+		JdbcTemplate sequential = database();
+		JdbcTemplate parallel = database();
+		generator(sequential, 1).generate();
+		generator(parallel, 4).generate();
+
+		for (String query : new String[] { "SELECT * FROM owners ORDER BY id", "SELECT * FROM pets ORDER BY id",
+				"SELECT * FROM visits ORDER BY id", "SELECT * FROM vet_specialties ORDER BY vet_id, specialty_id" }) {
+			List<Map<String, Object>> expected = sequential.queryForList(query);
+			assertThat(parallel.queryForList(query)).isEqualTo(expected);
+		}
+	}
+
+	private JdbcTemplate database() {
+		EmbeddedDatabase database = new EmbeddedDatabaseBuilder().generateUniqueName(true)
+				.setType(EmbeddedDatabaseType.H2).addScripts("db/h2/schema.sql", "db/h2/data.sql").build();
+		this.databases.add(database);
+		return new JdbcTemplate(database);
+	}
+
+	private DataGenerator generator(JdbcTemplate jdbc, int threads) {
+		DataGeneratorProperties properties = new DataGeneratorProperties();
+		properties.setOwners(2000);
+		properties.setVets(20);
+		properties.setThreads(threads);
+		properties.setChunkSize(300);
+		properties.setUntil(LocalDate.of(2022, 7, 1));
+		return new DataGenerator(jdbc, new DataSourceTransactionManager(jdbc.getDataSource()), properties);
+	}
+
+	private static long count(JdbcTemplate jdbc, String query) {
+		return jdbc.queryForObject(query, Long.class);
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.samples.petclinic.model.NamedEntities;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.vet.Specialty;
+import org.springframework.samples.petclinic.vet.VetRepository;
+
+/**
+ * Test class for {@link ReferenceData}
+ */
+@ExtendWith(MockitoExtension.class)
+class ReferenceDataTests {
+
+	@Mock
+	private OwnerRepository owners;
+
+	@Mock
+	private VetRepository vets;
+
+	private ReferenceData referenceData;
+
+	@BeforeEach
+	void setup() {
+		given(this.owners.findPetTypes()).willReturn(Arrays.asList(petType(2, "dog"), petType(1, "cat")));
+		given(this.vets.findSpecialties()).willReturn(Arrays.asList(specialty(1, "radiology")));
+		this.referenceData = new ReferenceData(this.owners, this.vets);
+	}
+
+	@Test
+	void shouldLoadOnFirstUse() {
+		NamedEntities<PetType> petTypes = this.referenceData.getPetTypes();
+		assertThat(petTypes.getAll()).extracting(PetType::getName).containsExactly("cat", "dog");
+		assertThat(petTypes.findById(2).getName()).isEqualTo("dog");
+		assertThat(petTypes.findByName("cat").getId()).isEqualTo(1);
+		assertThat(petTypes.findByName("hamster")).isNull();
+		assertThat(this.referenceData.getSpecialties().findByName("radiology").getId()).isEqualTo(1);
+
+		this.referenceData.getPetTypes();
+		this.referenceData.getSpecialties();
+		verify(this.owners, times(1)).findPetTypes();
+		verify(this.vets, times(1)).findSpecialties();
+	}
+
+	@Test
+	void shouldSwapSnapshotOnRefresh() {
+		NamedEntities<PetType> before = this.referenceData.getPetTypes();
+		long version = this.referenceData.getVersion();
+		given(this.owners.findPetTypes()).willReturn(Arrays.asList(petType(1, "cat"), petType(7, "lizard")));
+
+		this.referenceData.refresh();
+
+		assertThat(this.referenceData.getVersion()).isEqualTo(version + 1);
+		assertThat(this.referenceData.getPetTypes().findByName("lizard").getId()).isEqualTo(7);
+		assertThat(before.findByName("lizard")).isNull();
+	}
+
+	private static PetType petType(int id, String name) {
+		PetType petType = new PetType();
+		petType.setId(id);
+		petType.setName(name);
+		return petType;
+	}
+
+	private static Specialty specialty(int id, String name) {
+		Specialty specialty = new Specialty();
+		specialty.setId(id);
+		specialty.setName(name);
+		return specialty;
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.samples.petclinic.system.ServerTiming.Metric;
+
+/**
+ * Test class for {@link ServerTimingFilter}
+ */
+class ServerTimingFilterTests {
+
+	@Test
+	void shouldReportTimingsOfSampledRequests() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		new ServerTimingFilter(1.0, 1024 * 1024).doFilter(new MockHttpServletRequest(), response, (request, res) -> {
+			ServerTiming.current().add(Metric.DB, TimeUnit.MICROSECONDS.toNanos(1500));
+			ServerTiming.current().add(Metric.DB, TimeUnit.MICROSECONDS.toNanos(500));
+		});
+
+		assertThat(response.getBufferSize()).isEqualTo(1024 * 1024);
+		assertThat(response.getHeader(ServerTimingFilter.HEADER))
+				.startsWith("db;desc=\"JDBC statements (2)\";dur=2.00, total;desc=\"Total\";dur=");
+		assertThat(ServerTiming.current()).isNull();
+	}
+
+	@Test
+	void shouldSkipRequestsNotSampled() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		new ServerTimingFilter(0, 1024 * 1024).doFilter(new MockHttpServletRequest(), response,
+				(request, res) -> assertThat(ServerTiming.current()).isNull());
+
+		assertThat(response.getHeader(ServerTimingFilter.HEADER)).isNull();
+	}
+
+	@Test
+	void shouldDeferFlushesAndContentLength() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		new ServerTimingFilter(1.0, 1024 * 1024).doFilter(new MockHttpServletRequest(), response, (request, res) -> {
+			res.setContentLength(2);
+			res.getOutputStream().write("OK".getBytes());
+			res.flushBuffer();
+			assertThat(response.isCommitted()).isFalse();
+		});
+
+		assertThat(response.getHeader(ServerTimingFilter.HEADER)).isNotNull();
+		assertThat(response.getContentLength()).isEqualTo(2);
+	}
+
+	@Test
+	void shouldDeferRedirects() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		new ServerTimingFilter(1.0, 1024 * 1024).doFilter(new MockHttpServletRequest(), response, (request, res) -> {
+			((HttpServletResponse) res).sendRedirect("/owners/1");
+			assertThat(response.isCommitted()).isFalse();
+		});
+
+		assertThat(response.getHeader(ServerTimingFilter.HEADER)).isNotNull();
+		assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_FOUND);
+		assertThat(response.getRedirectedUrl()).isEqualTo("/owners/1");
+	}
+
+	@Test
+	void shouldSkipCommittedResponses() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		new ServerTimingFilter(1.0, 1024 * 1024).doFilter(new MockHttpServletRequest(), response,
+				(request, res) -> response.setCommitted(true));
+
+		assertThat(response.getHeader(ServerTimingFilter.HEADER)).isNull();
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Integration test for the Server-Timing header of {@link ServerTimingFilter}, with every
+ * request sampled.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "petclinic.server-timing.sample-rate=1")
+class ServerTimingIntegrationTests {
+
+	private static final Pattern DB = Pattern.compile("db;desc=\"JDBC statements \\((\\d+)\\)\";dur=([0-9.]+)");
+
+	@LocalServerPort
+	int port;
+
+	@Autowired
+	private RestTemplateBuilder builder;
+
+	@Test
+	void shouldTimeJdbcTemplateStatements() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+		form.add("date", "2013-01-01");
+		form.add("description", "shots");
+		// the visit is a single INSERT through JdbcTemplate, not through Hibernate
+		ResponseEntity<String> result = template.exchange(RequestEntity.post("/owners/6/pets/7/visits/new")
+				.contentType(MediaType.APPLICATION_FORM_URLENCODED).body(form), String.class);
+
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.FOUND);
+		Matcher db = DB.matcher(result.getHeaders().getFirst(ServerTimingFilter.HEADER));
+		assertThat(db.find()).isTrue();
+		assertThat(Integer.parseInt(db.group(1))).isPositive();
+		assertThat(Double.parseDouble(db.group(2))).isPositive();
+	}
+
+	@Test
+	void shouldTimeHibernateStatements() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		ResponseEntity<String> result = template.exchange(RequestEntity.get("/owners/3").build(), String.class);
+
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		Matcher db = DB.matcher(result.getHeaders().getFirst(ServerTimingFilter.HEADER));
+		assertThat(db.find()).isTrue();
+		assertThat(Integer.parseInt(db.group(1))).isPositive();
+	}
+
+}
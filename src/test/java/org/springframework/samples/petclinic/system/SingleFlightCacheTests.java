@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+/**
+ * Test class for {@link SingleFlightCache}
+ */
+class SingleFlightCacheTests {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void shouldCoalesceConcurrentLoads() throws Exception {
+		SingleFlightCache cache = cache(Duration.ofMinutes(1), null, 0);
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger loads = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			results.add(executor.submit(() -> cache.get(1, () -> {
+				loading.countDown();
+				release.await();
+				return "George-" + loads.incrementAndGet();
+			})));
+			loading.await();
+			for (int i = 0; i < 7; i++) {
+				results.add(executor.submit(() -> cache.get(1, () -> "Betty-" + loads.incrementAndGet())));
+			}
+			// wait for the followers to join the load in flight
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (coalesced() < 7 && System.nanoTime() < deadline) {
+				Thread.sleep(1);
+			}
+			release.countDown();
+			for (Future<String> result : results) {
+				assertThat(result.get()).isEqualTo("George-1");
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertThat(loads).hasValue(1);
+		assertThat(coalesced()).isEqualTo(7);
+		assertThat(this.registry.get("petclinic.cache.loads").tag("result", "loaded").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldPropagateLoadFailures() {
+		SingleFlightCache cache = cache(Duration.ofMinutes(1), null, 0);
+		assertThatExceptionOfType(Cache.ValueRetrievalException.class).isThrownBy(() -> cache.get(1, () -> {
+			throw new IllegalStateException("database down");
+		}));
+		assertThat(cache.get(1, () -> "George")).isEqualTo("George");
+	}
+
+	@Test
+	void shouldRefreshEarlyWhenLoadsAreSlow() {
+		// with a huge beta, a value is all but certain to be refreshed on the next lookup
+		SingleFlightCache cache = cache(Duration.ofMinutes(1), null, 1e9);
+		cache.get(1, () -> {
+			Thread.sleep(20);
+			return "George";
+		});
+		assertThat(cache.get(1)).isNull();
+		assertThat(this.registry.get("petclinic.cache.early.refreshes").counter().count()).isEqualTo(1);
+
+		// never without a time to live
+		SingleFlightCache eternal = cache(null, null, 1e9);
+		eternal.get(1, () -> {
+			Thread.sleep(20);
+			return "George";
+		});
+		assertThat(eternal.get(1).get()).isEqualTo("George");
+	}
+
+	@Test
+	void shouldExpireAbsentValuesFirst() throws Exception {
+		SingleFlightCache cache = cache(Duration.ofMinutes(1), Duration.ofSeconds(1), 0);
+		cache.put(1, "George");
+		cache.put(2, null);
+		assertThat(cache.get(1).get()).isEqualTo("George");
+		assertThat(cache.get(2)).isNotNull();
+		assertThat(cache.get(2).get()).isNull();
+		Thread.sleep(1500);
+		assertThat(cache.get(1).get()).isEqualTo("George");
+		assertThat(cache.get(2)).isNull();
+	}
+
+	private SingleFlightCache cache(Duration timeToLive, Duration negativeTimeToLive, double beta) {
+		CacheTierProperties.Tiers tiers = new CacheTierProperties.Tiers();
+		tiers.setTimeToLive(timeToLive);
+		tiers.setNegativeTimeToLive(negativeTimeToLive);
+		return new SingleFlightCache(new ConcurrentMapCache("owners"), tiers, beta, this.registry);
+	}
+
+	private double coalesced() {
+		return this.registry.get("petclinic.cache.loads").tag("result", "coalesced").counter().count();
+	}
+
+}
@@ -22,15 +22,20 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -39,6 +44,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  */
 
 @WebMvcTest(VetController.class)
+@Import(VetDirectory.class)
 class VetControllerTests {
 
 	@Autowired
@@ -47,6 +53,9 @@ class VetControllerTests {
 	@MockBean
 	private VetRepository vets;
 
+	@Autowired
+	private VetDirectory directory;
+
 	private Vet james() {
 		Vet james = new Vet();
 		james.setFirstName("James");
@@ -70,8 +79,7 @@ class VetControllerTests {
 	@BeforeEach
 	void setup() {
 		given(this.vets.findAll()).willReturn(Lists.newArrayList(james(), helen()));
-		given(this.vets.findAll(any(Pageable.class)))
-				.willReturn(new PageImpl<Vet>(Lists.newArrayList(james(), helen())));
+		directory.refresh();
 
 	}
 
@@ -80,9 +88,18 @@ class VetControllerTests {
 
 		mockMvc.perform(MockMvcRequestBuilders.get("/vets.html?page=1")).andExpect(status().isOk())
 				.andExpect(model().attributeExists("listVets")).andExpect(view().name("vets/vetList"));
+		// pages are cut from the cached list of all vets
+		verify(this.vets, never()).findAll(any(Pageable.class));
 
 	}
 
+	@Test
+	void testShowVetListHtmlBeyondLastPage() throws Exception {
+		mockMvc.perform(MockMvcRequestBuilders.get("/vets.html?page=3")).andExpect(status().isOk())
+				.andExpect(model().attribute("totalItems", 2L)).andExpect(model().attribute("totalPages", 1))
+				.andExpect(model().attribute("listVets", Lists.emptyList()));
+	}
+
 	@Test
 	void testShowResourcesVetList() throws Exception {
 		ResultActions actions = mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON))
@@ -91,4 +108,50 @@ class VetControllerTests {
 				.andExpect(jsonPath("$.vetList[0].id").value(1));
 	}
 
+	@Test
+	void testShowResourcesVetListFromSnapshot() throws Exception {
+		MvcResult result = mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk())
+				.andExpect(header().exists(HttpHeaders.ETAG)).andReturn();
+		String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+		assertThat(etag).startsWith("\"");
+
+		mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified()).andExpect(content().string(""));
+		mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk())
+				.andExpect(content().bytes(result.getResponse().getContentAsByteArray()));
+	}
+
+	@Test
+	void testShowResourcesVetListReloadedWithCachedList() throws Exception {
+		String etag = mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON)).andReturn().getResponse()
+				.getHeader(HttpHeaders.ETAG);
+		// the cached list expired and was reloaded
+		given(this.vets.findAll()).willReturn(Lists.newArrayList(helen()));
+
+		mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.vetList.length()").value(1))
+				.andExpect(jsonPath("$.vetList[0].id").value(2));
+		mockMvc.perform(get("/vets.html")).andExpect(model().attribute("totalItems", 1L));
+	}
+
+	@Test
+	void testShowResourcesVetListXml() throws Exception {
+		mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_XML)).andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_XML))
+				.andExpect(xpath("/vets/vetList[2]/specialties/name").string("radiology"));
+	}
+
+	@Test
+	void testShowResourcesVetListMalformedAccept() throws Exception {
+		mockMvc.perform(get("/vets").header(HttpHeaders.ACCEPT, "foo")).andExpect(status().isNotAcceptable());
+	}
+
+	@Test
+	void testShowResourcesVetListBySpecialty() throws Exception {
+		mockMvc.perform(get("/vets?specialty=radiology").accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk())
+				.andExpect(jsonPath("$.vetList.length()").value(1)).andExpect(jsonPath("$.vetList[0].id").value(2));
+		mockMvc.perform(get("/vets?specialty=surgery").accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk())
+				.andExpect(jsonPath("$.vetList.length()").value(0));
+	}
+
 }
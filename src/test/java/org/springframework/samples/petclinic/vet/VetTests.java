@@ -19,6 +19,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.util.SerializationUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
 /**
  * @author Dave Syer
@@ -37,4 +38,27 @@ class VetTests {
 		assertThat(other.getId()).isEqualTo(vet.getId());
 	}
 
+	@Test
+	void shouldSortSpecialtiesOfImmutableCopyOnce() {
+		Vet vet = new Vet();
+		vet.setId(123);
+		vet.addSpecialty(specialty(1, "surgery"));
+		vet.addSpecialty(specialty(2, "dentistry"));
+		Vet copy = vet.immutableCopy();
+
+		assertThat(copy.getId()).isEqualTo(123);
+		assertThat(copy.getSpecialties()).extracting(Specialty::getName).containsExactly("dentistry", "surgery");
+		assertThat(copy.getSpecialties()).isSameAs(copy.getSpecialties());
+		assertThatExceptionOfType(UnsupportedOperationException.class)
+				.isThrownBy(() -> copy.addSpecialty(specialty(3, "radiology")));
+		assertThat(copy.getNrOfSpecialties()).isEqualTo(2);
+	}
+
+	private static Specialty specialty(int id, String name) {
+		Specialty specialty = new Specialty();
+		specialty.setId(id);
+		specialty.setName(name);
+		return specialty;
+	}
+
 }